@@ -1,7 +1,10 @@
 package annotation;
 
+import enums.Aggregate;
 import enums.DataType;
+import enums.Direction;
 import enums.KeyType;
+import enums.TextStorage;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -26,4 +29,12 @@ public @interface ReportKey {
 
     String timeFormatPattern() default "HH:mm:ss";
 
+    TextStorage textStorage() default TextStorage.DEFAULT;
+
+    Aggregate[] aggregates() default {};
+
+    String groupBy() default "";
+
+    Direction direction() default Direction.DOWN;
+
 }
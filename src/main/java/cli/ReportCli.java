@@ -0,0 +1,52 @@
+package cli;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import model.Report;
+
+import java.io.*;
+
+public class ReportCli {
+
+    private static final String USAGE = "Usage: reporthelper <template.xlsx> <data.json> <output.xlsx> <data class>";
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.err));
+    }
+
+    public static int run(String[] args, PrintStream err) {
+        if (args.length != 4) {
+            err.println(USAGE);
+            return 2;
+        }
+        File template = new File(args[0]);
+        File data = new File(args[1]);
+        File output = new File(args[2]);
+        try {
+            Object reportData = readData(data, Class.forName(args[3]));
+            try (InputStream input = new FileInputStream(template)) {
+                new Report(reportData).createReport(input, output);
+            }
+            return 0;
+        } catch (ClassNotFoundException e) {
+            err.println("The data class is not found: " + args[3]);
+        } catch (IOException e) {
+            err.println("Unable to render the report: " + e.getMessage());
+        } catch (IncorrectTemplateException | ReportKeyException e) {
+            err.println(e.getMessage());
+        }
+        return 1;
+    }
+
+    private static Object readData(File data, Class<?> dataClass) throws IOException {
+        ObjectMapper mapper = new ObjectMapper()
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper.readValue(data, dataClass);
+    }
+}
@@ -0,0 +1,11 @@
+package enums;
+
+public enum Aggregate {
+
+    SUM,
+    COUNT,
+    AVG,
+    MIN,
+    MAX
+
+}
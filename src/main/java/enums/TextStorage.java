@@ -0,0 +1,10 @@
+package enums;
+
+public enum TextStorage {
+
+    DEFAULT,
+    SHARED,
+    INLINE,
+    AUTO
+
+}
@@ -0,0 +1,8 @@
+package exception;
+
+public class ReportCancelledException extends Exception {
+
+    public ReportCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package exception;
+
+public class ReportDeadlineException extends ReportCancelledException {
+
+    public ReportDeadlineException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+import exception.ReportCancelledException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//Ограничивает суммарную оценку памяти одновременно выполняемых отчетов,
+//отчет больше бюджета выполняется только в одиночку. Отчеты допускаются строго по очереди:
+//маленький отчет не обгоняет ожидающий большой. acquire блокирует вызывающий поток, поэтому
+//ожидающие отчеты занимают потоки AsyncReportExecutor наравне с выполняемыми
+public class AdmissionController {
+
+    private static final long WAIT_MILLIS = 100;
+
+    private final long budgetBytes;
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private long usedBytes;
+    private int running;
+
+    public AdmissionController(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized void acquire(long bytes, RenderContext context) throws InterruptedException, ReportCancelledException {
+        Object ticket = new Object();
+        queue.add(ticket);
+        try {
+            while (queue.peek() != ticket || !canAdmit(bytes)) {
+                context.checkCancelled();
+                wait(WAIT_MILLIS);
+            }
+        } finally {
+            //Допущенный или отмененный отчет уходит из очереди, следующий проверяет свою очередь сразу
+            queue.remove(ticket);
+            notifyAll();
+        }
+        usedBytes += bytes;
+        running++;
+    }
+
+    public synchronized void release(long bytes) {
+        usedBytes -= bytes;
+        running--;
+        notifyAll();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getWaitingCount() {
+        return queue.size();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    private boolean canAdmit(long bytes) {
+        if (bytes > budgetBytes) {
+            return running == 0;
+        }
+        //Оценка потоковых данных равна Long.MAX_VALUE, поэтому сумма не вычисляется
+        return bytes <= budgetBytes - usedBytes;
+    }
+}
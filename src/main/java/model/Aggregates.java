@@ -0,0 +1,130 @@
+package model;
+
+import enums.Aggregate;
+import exception.FormatReportKeyException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Итоги по полям элементов одного раскрытия списка. Значения учитываются в том же проходе,
+//в котором заполняются блоки, повторного обхода списка нет
+class Aggregates {
+
+    private final List<KeyData> keys;
+    private final Map<String, Accumulator> accumulators = new HashMap<>();
+
+    Aggregates(List<KeyData> keys) {
+        this.keys = keys;
+        for (KeyData keyData : keys) {
+            accumulators.put(keyData.getName(), new Accumulator());
+        }
+    }
+
+    static String getKeyName(Aggregate aggregate, String key) {
+        return aggregate.name() + "(" + key + ")";
+    }
+
+    Map<String, Accumulator> getAccumulators() {
+        return accumulators;
+    }
+
+    void add(Object element) {
+        if (element instanceof ColumnarBatch.Row) {
+            addRow((ColumnarBatch<?>.Row) element);
+            return;
+        }
+        for (KeyData keyData : keys) {
+            try {
+                accumulators.get(keyData.getName()).add(keyData.getValue(element));
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+    }
+
+    //Числовые колонки учитываются без упаковки значений
+    private void addRow(ColumnarBatch<?>.Row row) {
+        for (KeyData keyData : keys) {
+            Object column = row.getColumn(keyData.getName());
+            Accumulator accumulator = accumulators.get(keyData.getName());
+            if (column instanceof double[]) {
+                accumulator.add(((double[]) column)[row.getIndex()]);
+            } else if (column instanceof long[]) {
+                accumulator.add((double) ((long[]) column)[row.getIndex()]);
+            } else {
+                accumulator.add(row.get(keyData.getName()));
+            }
+        }
+    }
+
+    void merge(Aggregates other) {
+        other.accumulators.forEach((key, accumulator) -> accumulators.get(key).merge(accumulator));
+    }
+
+    static class Accumulator {
+        private long count;
+        private long numberCount;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private boolean numeric = true;
+
+        private void add(Object value) {
+            if (value == null) return;
+            if (value instanceof Number) {
+                add(((Number) value).doubleValue());
+                return;
+            }
+            count++;
+            double number;
+            try {
+                number = Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                numeric = false;
+                return;
+            }
+            addNumber(number);
+        }
+
+        private void add(double number) {
+            count++;
+            addNumber(number);
+        }
+
+        private void addNumber(double number) {
+            numberCount++;
+            sum += number;
+            min = Math.min(min, number);
+            max = Math.max(max, number);
+        }
+
+        private void merge(Accumulator other) {
+            count += other.count;
+            numberCount += other.numberCount;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            numeric &= other.numeric;
+        }
+
+        //Для пустого списка среднее, минимум и максимум не определены
+        Double get(Aggregate aggregate) throws FormatReportKeyException {
+            if (aggregate == Aggregate.COUNT) {
+                return (double) count;
+            }
+            if (!numeric) {
+                throw new FormatReportKeyException("The aggregate " + aggregate + " requires numeric values.");
+            }
+            switch (aggregate) {
+                case SUM:
+                    return sum;
+                case AVG:
+                    return (numberCount == 0) ? null : sum / numberCount;
+                case MIN:
+                    return (numberCount == 0) ? null : min;
+                default:
+                    return (numberCount == 0) ? null : max;
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncReportExecutor implements AutoCloseable {
+
+    private final ThreadPoolExecutor executor;
+    private final AdmissionController admissionController;
+    private final RenderPlanner planner;
+
+    public AsyncReportExecutor(int threads, int queueCapacity) {
+        this(threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public AsyncReportExecutor(int threads, int queueCapacity, RejectedExecutionHandler rejectionPolicy) {
+        this(threads, queueCapacity, rejectionPolicy, null, null);
+    }
+
+    public AsyncReportExecutor(int threads, int queueCapacity, AdmissionController admissionController, RenderPlanner planner) {
+        this(threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy(), admissionController, planner);
+    }
+
+    public AsyncReportExecutor(int threads, int queueCapacity, RejectedExecutionHandler rejectionPolicy,
+                               AdmissionController admissionController, RenderPlanner planner) {
+        this.admissionController = admissionController;
+        this.planner = planner;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                completeDiscarded(rejectionPolicy));
+    }
+
+    public CompletableFuture<File> submit(Report report, InputStream template, File file) {
+        return submit(report, template, file, new RenderContext());
+    }
+
+    public CompletableFuture<File> submit(Report report, InputStream template, File file, RenderContext context) {
+        RenderTask task = new RenderTask(report, template, file, context);
+        task.future.whenComplete((result, e) -> {
+            if (task.future.isCancelled()) context.cancel();
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    //Политики Discard и DiscardOldest выбрасывают задачу молча, ее future завершается отказом.
+    //После остановки пула CallerRuns тоже не выполняет задачу
+    private static RejectedExecutionHandler completeDiscarded(RejectedExecutionHandler policy) {
+        return (runnable, pool) -> {
+            if (policy instanceof ThreadPoolExecutor.DiscardOldestPolicy && !pool.isShutdown()) {
+                discard(pool.getQueue().poll());
+                pool.execute(runnable);
+                return;
+            }
+            policy.rejectedExecution(runnable, pool);
+            if (policy instanceof ThreadPoolExecutor.DiscardPolicy || policy instanceof ThreadPoolExecutor.DiscardOldestPolicy
+                    || pool.isShutdown()) {
+                discard(runnable);
+            }
+        };
+    }
+
+    private static void discard(Runnable runnable) {
+        if (runnable instanceof RenderTask && ((RenderTask) runnable).start()) {
+            ((RenderTask) runnable).future.completeExceptionally(new RejectedExecutionException("The report task was discarded"));
+        }
+    }
+
+    private void render(Report report, InputStream template, File file, RenderContext context) throws Exception {
+        if (admissionController == null) {
+            report.createReport(template, file, context);
+            return;
+        }
+        byte[] templateBytes = template.readAllBytes();
+        long bytes = planner.estimateMemory(report, templateBytes.length);
+        admissionController.acquire(bytes, context);
+        try {
+            report.createReport(new ByteArrayInputStream(templateBytes), file, context);
+        } finally {
+            admissionController.release(bytes);
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    //Задачи из очереди не выполняются, их future завершаются отказом
+    @Override
+    public void close() {
+        for (Runnable runnable : executor.shutdownNow()) {
+            discard(runnable);
+        }
+    }
+
+    //Задача рендеринга: выполняется или выбрасывается только один раз
+    private class RenderTask implements Runnable {
+        private final Report report;
+        private final InputStream template;
+        private final File file;
+        private final RenderContext context;
+        private final CompletableFuture<File> future = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private RenderTask(Report report, InputStream template, File file, RenderContext context) {
+            this.report = report;
+            this.template = template;
+            this.file = file;
+            this.context = context;
+        }
+
+        private boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (!start() || future.isDone()) {
+                return;
+            }
+            try {
+                render(report, template, file, context);
+                future.complete(file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+            } catch (Throwable e) {
+                //Ошибки, например NoClassDefFoundError без необязательного Jackson, тоже завершают future
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
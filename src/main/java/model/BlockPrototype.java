@@ -0,0 +1,167 @@
+package model;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellCopyPolicy;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+//Строки листа сложного ключа, разобранные один раз на раскрытие списка. Строки элемента создаются
+//напрямую из готовых ячеек той же книги, а ячейки с ключами известны заранее и повторно не ищутся.
+//Формулы и гиперссылки копируются через copyRows: их ссылки нужно сдвигать
+class BlockPrototype {
+
+    private final List<XSSFRow> rowList;
+    private final Predicate<String> isKey;
+    private final boolean stampable;
+    private final short[] heights;
+    private final List<List<PrototypeCell>> rows = new ArrayList<>();
+    private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+    private int width = 1;
+
+    BlockPrototype(List<XSSFRow> rowList, Predicate<String> isKey) {
+        this.rowList = rowList;
+        this.isKey = isKey;
+        this.heights = new short[rowList.size()];
+        boolean stampable = rowList.isEmpty() || rowList.get(0).getSheet().getHyperlinkList().isEmpty();
+        for (int i = 0; i < rowList.size(); i++) {
+            XSSFRow row = rowList.get(i);
+            heights[i] = row.getHeight();
+            List<PrototypeCell> cells = new ArrayList<>();
+            for (Cell cell : row) {
+                if (cell.getCellType() == CellType.FORMULA) stampable = false;
+                cells.add(new PrototypeCell((XSSFCell) cell, isKeyCell(cell)));
+                width = Math.max(width, cell.getColumnIndex() + 1);
+            }
+            rows.add(cells);
+        }
+        this.stampable = stampable;
+        if (!rowList.isEmpty()) {
+            int firstRow = rowList.get(0).getRowNum();
+            int lastRow = rowList.get(rowList.size() - 1).getRowNum();
+            for (CellRangeAddress mergedRegion : rowList.get(0).getSheet().getMergedRegions()) {
+                if (mergedRegion.getFirstRow() >= firstRow && mergedRegion.getLastRow() <= lastRow) {
+                    mergedRegions.add(new CellRangeAddress(mergedRegion.getFirstRow() - firstRow, mergedRegion.getLastRow() - firstRow,
+                            mergedRegion.getFirstColumn(), mergedRegion.getLastColumn()));
+                    width = Math.max(width, mergedRegion.getLastColumn() + 1);
+                }
+            }
+        }
+    }
+
+    List<XSSFRow> getRowList() {
+        return rowList;
+    }
+
+    int size() {
+        return rowList.size();
+    }
+
+    //Ширина блока в колонках: от первой колонки листа до последней занятой ячейки или объединения
+    int getWidth() {
+        return width;
+    }
+
+    //Создает строки блока начиная со строки startRow и возвращает ячейки с ключами
+    List<XSSFCell> stamp(XSSFSheet destination, int startRow) {
+        if (rowList.isEmpty()) return Collections.emptyList();
+        if (!stampable) {
+            destination.copyRows(rowList, startRow, new CellCopyPolicy());
+            return getKeyCells(destination, startRow);
+        }
+        List<XSSFCell> keyCells = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            XSSFRow row = destination.createRow(startRow + i);
+            row.setHeight(heights[i]);
+            String rowNumber = Integer.toString(startRow + i + 1);
+            for (PrototypeCell prototype : rows.get(i)) {
+                XSSFCell cell = row.createCell(prototype.column);
+                CTCell ctCell = cell.getCTCell();
+                ctCell.set(prototype.ctCell);
+                ctCell.setR(prototype.columnName + rowNumber);
+                if (prototype.key) keyCells.add(cell);
+            }
+        }
+        for (CellRangeAddress mergedRegion : mergedRegions) {
+            destination.addMergedRegionUnsafe(new CellRangeAddress(mergedRegion.getFirstRow() + startRow,
+                    mergedRegion.getLastRow() + startRow, mergedRegion.getFirstColumn(), mergedRegion.getLastColumn()));
+        }
+        return keyCells;
+    }
+
+    //Ставит блок правее в уже существующие строки, начиная с ячейки (startRow, startColumn).
+    //Формулы сдвигаются на положение блока, гиперссылки не переносятся
+    List<XSSFCell> stamp(XSSFSheet destination, int startRow, int startColumn) {
+        List<XSSFCell> keyCells = new ArrayList<>();
+        XSSFEvaluationWorkbook evaluationWorkbook = null;
+        int sheetIndex = destination.getWorkbook().getSheetIndex(destination);
+        for (int i = 0; i < rows.size(); i++) {
+            XSSFRow row = destination.getRow(startRow + i);
+            if (row == null) row = destination.createRow(startRow + i);
+            if (heights[i] > row.getHeight()) row.setHeight(heights[i]);
+            String rowNumber = Integer.toString(startRow + i + 1);
+            for (PrototypeCell prototype : rows.get(i)) {
+                int column = prototype.column + startColumn;
+                XSSFCell cell = row.createCell(column);
+                CTCell ctCell = cell.getCTCell();
+                ctCell.set(prototype.ctCell);
+                ctCell.setR(CellReference.convertNumToColString(column) + rowNumber);
+                if (prototype.formula != null) {
+                    if (evaluationWorkbook == null) evaluationWorkbook = XSSFEvaluationWorkbook.create(destination.getWorkbook());
+                    if (ctCell.isSetF()) ctCell.unsetF();
+                    cell.setCellFormula(DeferredFormulas.shift(evaluationWorkbook, prototype.formula, sheetIndex,
+                            startRow + i - rowList.get(i).getRowNum(), startColumn));
+                }
+                if (prototype.key) keyCells.add(cell);
+            }
+        }
+        for (CellRangeAddress mergedRegion : mergedRegions) {
+            destination.addMergedRegionUnsafe(new CellRangeAddress(mergedRegion.getFirstRow() + startRow,
+                    mergedRegion.getLastRow() + startRow, mergedRegion.getFirstColumn() + startColumn,
+                    mergedRegion.getLastColumn() + startColumn));
+        }
+        return keyCells;
+    }
+
+    private List<XSSFCell> getKeyCells(XSSFSheet sheet, int startRow) {
+        List<XSSFCell> keyCells = new ArrayList<>();
+        for (int i = startRow; i < startRow + rowList.size(); i++) {
+            XSSFRow row = sheet.getRow(i);
+            if (row == null) continue;
+            for (Cell cell : row) {
+                if (isKeyCell(cell)) keyCells.add((XSSFCell) cell);
+            }
+        }
+        return keyCells;
+    }
+
+    private boolean isKeyCell(Cell cell) {
+        return cell.getCellType() == CellType.STRING && isKey.test(cell.getStringCellValue());
+    }
+
+    private static class PrototypeCell {
+        private final int column;
+        private final String columnName;
+        private final CTCell ctCell;
+        private final String formula;
+        private final boolean key;
+
+        private PrototypeCell(XSSFCell cell, boolean key) {
+            this.column = cell.getColumnIndex();
+            this.columnName = CellReference.convertNumToColString(column);
+            this.ctCell = (CTCell) cell.getCTCell().copy();
+            this.formula = (cell.getCellType() == CellType.FORMULA) ? cell.getCellFormula() : null;
+            this.key = key;
+        }
+    }
+}
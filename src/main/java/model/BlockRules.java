@@ -0,0 +1,221 @@
+package model;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+//Условное форматирование и проверки данных листов сложных ключей. copyRows их не переносит, поэтому
+//диапазоны всех вставленных блоков собираются и в конце добавляются одним правилом на каждое правило шаблона
+class BlockRules {
+
+    private final XSSFWorkbook wb;
+    private final XSSFEvaluationWorkbook evaluationWorkbook;
+    private final Predicate<String> isComplexKey;
+    private final Map<String, BlockSheet> blocks = new HashMap<>();
+    //Лист отчета -> правило шаблона -> диапазоны в отчете для каждого диапазона правила
+    private final Map<XSSFSheet, Map<Rule, List<List<CellRangeAddress>>>> ranges = new LinkedHashMap<>();
+
+    BlockRules(XSSFWorkbook wb, Predicate<String> isComplexKey) {
+        this.wb = wb;
+        this.evaluationWorkbook = XSSFEvaluationWorkbook.create(wb);
+        this.isComplexKey = isComplexKey;
+    }
+
+    static boolean hasRules(XSSFSheet sheet) {
+        return sheet.getCTWorksheet().sizeOfConditionalFormattingArray() != 0 || !sheet.getDataValidations().isEmpty();
+    }
+
+    //Блок листа source заполнен в строках [startRow, startRow + height) листа destination
+    void add(XSSFSheet source, XSSFSheet destination, int startRow, int height) {
+        add(source, destination, startRow, 0, height);
+    }
+
+    //Для горизонтальных списков блок сдвинут еще и на startColumn колонок
+    void add(XSSFSheet source, XSSFSheet destination, int startRow, int startColumn, int height) {
+        if (source.getWorkbook() != wb || height <= 0) return;
+        BlockSheet block = blocks.computeIfAbsent(source.getSheetName(), name -> compile(source));
+        if (block.rules.isEmpty()) return;
+        Map<Rule, List<List<CellRangeAddress>>> sheetRanges = ranges.computeIfAbsent(destination, sheet -> new LinkedHashMap<>());
+        for (Rule rule : block.rules) {
+            List<List<CellRangeAddress>> ruleRanges = sheetRanges.computeIfAbsent(rule, r -> new ArrayList<>());
+            for (int i = 0; i < rule.ranges.length; i++) {
+                if (ruleRanges.size() == i) ruleRanges.add(new ArrayList<>());
+                CellRangeAddress range = rule.ranges[i];
+                int firstRow = startRow + block.getRow(range.getFirstRow(), height, false);
+                int lastRow = startRow + block.getRow(Math.min(range.getLastRow(), block.height - 1), height, true);
+                if (range.getFirstRow() < block.height && firstRow <= lastRow) {
+                    ruleRanges.get(i).add(new CellRangeAddress(firstRow, lastRow,
+                            range.getFirstColumn() + startColumn, range.getLastColumn() + startColumn));
+                }
+            }
+        }
+    }
+
+    //Строки [0, endRow) перенесены на новый лист; строки выше startRow остались и на старом
+    void move(XSSFSheet sheet, XSSFSheet shard, int startRow) {
+        Map<Rule, List<List<CellRangeAddress>>> sheetRanges = ranges.remove(sheet);
+        if (sheetRanges == null) return;
+        Map<Rule, List<List<CellRangeAddress>>> kept = new LinkedHashMap<>();
+        sheetRanges.forEach((rule, ruleRanges) -> {
+            List<List<CellRangeAddress>> keptRanges = new ArrayList<>();
+            for (List<CellRangeAddress> list : ruleRanges) {
+                List<CellRangeAddress> keptList = new ArrayList<>();
+                for (CellRangeAddress range : list) {
+                    if (range.getFirstRow() < startRow) {
+                        keptList.add(new CellRangeAddress(range.getFirstRow(), Math.min(range.getLastRow(), startRow - 1),
+                                range.getFirstColumn(), range.getLastColumn()));
+                    }
+                }
+                keptRanges.add(keptList);
+            }
+            kept.put(rule, keptRanges);
+        });
+        ranges.put(sheet, kept);
+        ranges.put(shard, sheetRanges);
+    }
+
+    void apply() {
+        ranges.forEach((sheet, sheetRanges) -> {
+            int priority = getMaxPriority(sheet);
+            for (Map.Entry<Rule, List<List<CellRangeAddress>>> entry : sheetRanges.entrySet()) {
+                Rule rule = entry.getKey();
+                List<String> sqref = new ArrayList<>();
+                CellRangeAddress first = null;
+                for (List<CellRangeAddress> list : entry.getValue()) {
+                    for (CellRangeAddress range : merge(list)) {
+                        if (first == null) first = range;
+                        sqref.add(range.formatAsString());
+                    }
+                }
+                if (first == null || entry.getValue().get(0).isEmpty()) continue;
+                //Относительные ссылки формул правила отсчитываются от первой ячейки первого диапазона
+                int shift = first.getFirstRow() - rule.ranges[0].getFirstRow();
+                int columnShift = first.getFirstColumn() - rule.ranges[0].getFirstColumn();
+                int sheetIndex = wb.getSheetIndex(sheet);
+                if (rule.ct instanceof CTConditionalFormatting) {
+                    CTConditionalFormatting formatting = sheet.getCTWorksheet().addNewConditionalFormatting();
+                    formatting.set(rule.ct);
+                    formatting.setSqref(sqref);
+                    for (CTCfRule cfRule : formatting.getCfRuleArray()) {
+                        cfRule.setPriority(++priority);
+                        for (int i = 0; i < cfRule.sizeOfFormulaArray(); i++) {
+                            cfRule.setFormulaArray(i, shift(cfRule.getFormulaArray(i), sheetIndex, shift, columnShift));
+                        }
+                    }
+                } else {
+                    CTWorksheet worksheet = sheet.getCTWorksheet();
+                    CTDataValidations validations = worksheet.isSetDataValidations()
+                            ? worksheet.getDataValidations() : worksheet.addNewDataValidations();
+                    CTDataValidation validation = validations.addNewDataValidation();
+                    validation.set(rule.ct);
+                    validation.setSqref(sqref);
+                    if (validation.isSetFormula1()) validation.setFormula1(shift(validation.getFormula1(), sheetIndex, shift, columnShift));
+                    if (validation.isSetFormula2()) validation.setFormula2(shift(validation.getFormula2(), sheetIndex, shift, columnShift));
+                    validations.setCount(validations.sizeOfDataValidationArray());
+                }
+            }
+        });
+        ranges.clear();
+    }
+
+    private String shift(String formula, int sheetIndex, int rowShift, int columnShift) {
+        return (rowShift == 0 && columnShift == 0) ? formula
+                : DeferredFormulas.shift(evaluationWorkbook, formula, sheetIndex, rowShift, columnShift);
+    }
+
+    private BlockSheet compile(XSSFSheet sheet) {
+        BlockSheet block = new BlockSheet(sheet.getLastRowNum() + 1);
+        for (Row row : sheet) {
+            for (Cell cell : row) {
+                if (cell.getCellType() == CellType.STRING && isComplexKey.test(cell.getStringCellValue())) {
+                    block.firstKey = Math.min(block.firstKey, row.getRowNum());
+                    block.lastKey = Math.max(block.lastKey, row.getRowNum());
+                }
+            }
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (CTConditionalFormatting formatting : sheet.getCTWorksheet().getConditionalFormattingArray()) {
+            rules.add(new Rule(formatting.copy(), formatting.getSqref()));
+        }
+        if (sheet.getCTWorksheet().isSetDataValidations()) {
+            for (CTDataValidation validation : sheet.getCTWorksheet().getDataValidations().getDataValidationArray()) {
+                rules.add(new Rule(validation.copy(), validation.getSqref()));
+            }
+        }
+        rules.stream().filter(rule -> rule.ranges.length != 0).forEach(block.rules::add);
+        return block;
+    }
+
+    private static List<CellRangeAddress> merge(List<CellRangeAddress> list) {
+        List<CellRangeAddress> sorted = new ArrayList<>(list);
+        sorted.sort(Comparator.comparingInt(CellRangeAddress::getFirstColumn)
+                .thenComparingInt(CellRangeAddress::getLastColumn)
+                .thenComparingInt(CellRangeAddress::getFirstRow));
+        List<CellRangeAddress> merged = new ArrayList<>();
+        for (CellRangeAddress range : sorted) {
+            CellRangeAddress last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.getFirstColumn() == range.getFirstColumn() && last.getLastColumn() == range.getLastColumn()
+                    && range.getFirstRow() <= last.getLastRow() + 1) {
+                last.setLastRow(Math.max(last.getLastRow(), range.getLastRow()));
+            } else {
+                merged.add(range.copy());
+            }
+        }
+        merged.sort(Comparator.comparingInt(CellRangeAddress::getFirstRow).thenComparingInt(CellRangeAddress::getFirstColumn));
+        return merged;
+    }
+
+    private static int getMaxPriority(XSSFSheet sheet) {
+        int priority = 0;
+        for (CTConditionalFormatting formatting : sheet.getCTWorksheet().getConditionalFormattingArray()) {
+            for (CTCfRule cfRule : formatting.getCfRuleArray()) {
+                priority = Math.max(priority, cfRule.getPriority());
+            }
+        }
+        return priority;
+    }
+
+    private static class BlockSheet {
+        private final int height;
+        private int firstKey = Integer.MAX_VALUE;
+        private int lastKey = -1;
+        private final List<Rule> rules = new ArrayList<>();
+
+        private BlockSheet(int height) {
+            this.height = height;
+        }
+
+        //Вложенные списки меняют высоту блока: строки до них не сдвигаются, строки после - на разницу высот,
+        //диапазон, задевающий строки вложенных списков, растягивается на все вставленные строки
+        private int getRow(int row, int filledHeight, boolean end) {
+            if (row < firstKey) return row;
+            if (row > lastKey || end) return row + filledHeight - height;
+            return row;
+        }
+    }
+
+    private static class Rule {
+        private final XmlObject ct;
+        private final CellRangeAddress[] ranges;
+
+        private Rule(XmlObject ct, List<?> sqref) {
+            this.ct = ct;
+            List<CellRangeAddress> list = new ArrayList<>();
+            for (Object ref : sqref) {
+                for (String range : ref.toString().split(" ")) {
+                    if (!range.isEmpty()) list.add(CellRangeAddress.valueOf(range));
+                }
+            }
+            this.ranges = list.toArray(new CellRangeAddress[0]);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package model;
+
+import enums.KeyType;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+//Узел данных, привязанный к аннотированному типу: ключи типа читают значения через DataBinding
+final class BoundNode {
+
+    private final Class<?> type;
+    private final Object node;
+    private final DataBinding binding;
+
+    BoundNode(Class<?> type, Object node, DataBinding binding) {
+        this.type = type;
+        this.node = node;
+        this.binding = binding;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    boolean isSinglePass() {
+        return binding.isSinglePass();
+    }
+
+    //Список сложного ключа отдается как список узлов типа элементов без копирования
+    Object get(KeyData keyData) {
+        Object value = binding.get(node, keyData.getFieldName());
+        if (value == null || keyData.getReportKey().keyType() != KeyType.COMPLEX) return value;
+        Class<?> elementType = keyData.getElementType();
+        List<?> elements = binding.getElements(value);
+        if (elements == null) {
+            Iterator<?> iterator = binding.getIterator(value);
+            if (iterator == null) return null;
+            return new Iterator<BoundNode>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public BoundNode next() {
+                    return new BoundNode(elementType, iterator.next(), binding);
+                }
+            };
+        }
+        return new AbstractList<BoundNode>() {
+            @Override
+            public BoundNode get(int index) {
+                return new BoundNode(elementType, elements.get(index), binding);
+            }
+
+            @Override
+            public int size() {
+                return elements.size();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(node);
+    }
+}
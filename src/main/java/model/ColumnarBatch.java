@@ -0,0 +1,99 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+//Список элементов сложного ключа, хранящийся по колонкам: значения ключей лежат в массивах по имени ключа.
+//Строки заполняются по индексу, объекты элементов не создаются
+public final class ColumnarBatch<T> {
+
+    private final Class<T> type;
+    private final int size;
+    private final Map<String, Object> columns = new HashMap<>();
+
+    public ColumnarBatch(Class<T> type, int size) {
+        if (type == null) {
+            throw new IllegalArgumentException("The element type must not be null");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("The size must not be negative");
+        }
+        this.type = type;
+        this.size = size;
+    }
+
+    public ColumnarBatch<T> column(String key, double[] values) {
+        return putColumn(key, values, values.length);
+    }
+
+    public ColumnarBatch<T> column(String key, long[] values) {
+        return putColumn(key, values, values.length);
+    }
+
+    public ColumnarBatch<T> column(String key, String[] values) {
+        return putColumn(key, values, values.length);
+    }
+
+    private ColumnarBatch<T> putColumn(String key, Object values, int length) {
+        if (key == null) {
+            throw new IllegalArgumentException("The key must not be null");
+        }
+        if (length != size) {
+            throw new IllegalArgumentException("The column " + key + " must contain " + size + " values");
+        }
+        columns.put(key, values);
+        return this;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Строки пакета как список: get возвращает один и тот же курсор, переставленный на нужный индекс
+    List<Row> rows() {
+        Row row = new Row();
+        return new AbstractList<Row>() {
+            @Override
+            public Row get(int index) {
+                row.index = Objects.checkIndex(index, size);
+                return row;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    final class Row {
+        private int index;
+
+        Class<T> getType() {
+            return type;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        Object getColumn(String key) {
+            return columns.get(key);
+        }
+
+        Object get(String key) {
+            Object column = columns.get(key);
+            if (column instanceof double[]) return ((double[]) column)[index];
+            if (column instanceof long[]) return ((long[]) column)[index];
+            if (column instanceof String[]) return ((String[]) column)[index];
+            return null;
+        }
+    }
+}
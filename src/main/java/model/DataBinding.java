@@ -0,0 +1,29 @@
+package model;
+
+import java.util.Iterator;
+import java.util.List;
+
+//Чтение значений ключей из структур без аннотированных полей: Map, дерево JSON. Набор ключей задает
+//аннотированный тип, значения поля ищутся в узле по имени поля этого типа
+public interface DataBinding {
+
+    //Значение поля узла или null, если такого поля нет
+    Object get(Object node, String field);
+
+    //Элементы узла-списка или null, если узел не является списком
+    List<?> getElements(Object node);
+
+    //Элементы узла-списка, которые читаются по одному за единственный проход, или null
+    default Iterator<?> getIterator(Object node) {
+        return null;
+    }
+
+    //Данные читаются за один проход: до заполнения их нельзя обходить ни для кэша, ни для оценки памяти
+    default boolean isSinglePass() {
+        return false;
+    }
+
+    static DataBinding map() {
+        return MapBinding.INSTANCE;
+    }
+}
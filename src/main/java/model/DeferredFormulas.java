@@ -0,0 +1,374 @@
+package model;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.*;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+//Формулы и именованные диапазоны на время заполнения убираются из книги: иначе каждый shiftRows
+//заново разбирает все формулы книги. Ссылки запоминаются в строках шаблона и пересчитываются один раз в конце.
+//Ссылка на строку раскрытого ключа становится диапазоном вставленных строк: SUM(B5:B5) -> SUM(B5:B9)
+class DeferredFormulas {
+
+    private static final int LAST_ROW = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+    private static final int LAST_COLUMN = SpreadsheetVersion.EXCEL2007.getLastColumnIndex();
+
+    private final XSSFWorkbook wb;
+    private final XSSFEvaluationWorkbook evaluationWorkbook;
+    private final Map<String, SheetShifts> shifts = new HashMap<>();
+    //Формулы листов сложных ключей: лист -> строка -> столбец -> формула
+    private final Map<String, Map<Integer, Map<Integer, String>>> blockFormulas = new HashMap<>();
+    private final List<PendingFormula> formulas = new ArrayList<>();
+    private SheetShifts active;
+    private boolean restored;
+
+    DeferredFormulas(XSSFWorkbook wb, Predicate<String> isKeySheet, Predicate<String> isComplexKey) {
+        this.wb = wb;
+        this.evaluationWorkbook = XSSFEvaluationWorkbook.create(wb);
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            String sheetName = wb.getSheetName(i);
+            if (!sheetName.equals(Report.DATABASE_KEY) && !isKeySheet.test(sheetName)) {
+                shifts.put(sheetName, new SheetShifts());
+            }
+        }
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            XSSFSheet sheet = wb.getSheetAt(i);
+            if (isKeySheet.test(sheet.getSheetName())) {
+                detachBlock(sheet);
+            } else if (shifts.containsKey(sheet.getSheetName())) {
+                detach(sheet, 0, sheet.getLastRowNum(), isComplexKey);
+            }
+        }
+        for (XSSFName name : wb.getAllNames()) {
+            if (name.isFunctionName() || name.getRefersToFormula() == null) continue;
+            String sheetName = (name.getSheetIndex() < 0) ? null : wb.getSheetName(name.getSheetIndex());
+            PendingFormula formula = compile(name.getRefersToFormula(), FormulaType.NAMEDRANGE, name.getSheetIndex(), sheetName);
+            if (formula != null) {
+                formula.name = name;
+                formulas.add(formula);
+                name.setRefersToFormula("#REF!");
+            }
+        }
+    }
+
+    //Начало заполнения ячейки с ключом верхнего уровня; строки листа выше нее больше не сдвигаются
+    void begin(XSSFCell cell) {
+        if (restored) return;
+        SheetShifts sheetShifts = shifts.get(cell.getSheet().getSheetName());
+        sheetShifts.cell = cell;
+        sheetShifts.start = cell.getRowIndex();
+        sheetShifts.row = sheetShifts.start - sheetShifts.offset;
+        sheetShifts.lastRowNum = cell.getSheet().getLastRowNum();
+        active = sheetShifts;
+    }
+
+    void end() {
+        if (restored || active == null) return;
+        SheetShifts sheetShifts = active;
+        active = null;
+        //Ячейка может удалить только свою строку
+        int delta = Math.max(sheetShifts.cell.getSheet().getLastRowNum() - sheetShifts.lastRowNum, -1);
+        if (delta != 0) {
+            sheetShifts.deltas.put(sheetShifts.row, delta);
+            sheetShifts.offset += delta;
+        }
+        sheetShifts.frontier = sheetShifts.start + delta + 1;
+        sheetShifts.cell = null;
+    }
+
+    //Строки блока скопированы с листа сложного ключа без формул, формулы переносятся со сдвигом
+    //относительных ссылок, как это делает copyRows
+    void copyBlock(List<XSSFRow> rowList, XSSFSheet destination, int destinationRow) {
+        if (restored || rowList.isEmpty() || destination.getWorkbook() != wb) return;
+        Map<Integer, Map<Integer, String>> sheetFormulas = blockFormulas.get(rowList.get(0).getSheet().getSheetName());
+        if (sheetFormulas == null) return;
+        int sheetIndex = wb.getSheetIndex(destination);
+        for (int i = 0; i < rowList.size(); i++) {
+            Map<Integer, String> rowFormulas = sheetFormulas.get(rowList.get(i).getRowNum());
+            if (rowFormulas == null) continue;
+            XSSFRow row = destination.getRow(destinationRow + i);
+            int shift = destinationRow + i - rowList.get(i).getRowNum();
+            for (Map.Entry<Integer, String> formula : rowFormulas.entrySet()) {
+                row.getCell(formula.getKey(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK)
+                        .setCellFormula(shiftRows(evaluationWorkbook, formula.getValue(), sheetIndex, shift));
+            }
+        }
+    }
+
+    //Формулы листа сложного ключа убраны на время заполнения
+    boolean hasFormulas(String sheetName) {
+        return !restored && blockFormulas.containsKey(sheetName);
+    }
+
+    //Формулы заполненного блока верхнего уровня убираются до конца заполнения
+    void detach(XSSFSheet sheet, int startRow, int endRow) {
+        if (restored || !shifts.containsKey(sheet.getSheetName())) return;
+        detach(sheet, startRow, endRow, key -> false);
+    }
+
+    //Возвращает формулы в книгу. Если строки еще сдвигаются (перенос на новый лист), дальше их пересчитывает POI
+    void restore() {
+        if (restored) return;
+        end();
+        restored = true;
+        blockFormulas.forEach((sheetName, sheetFormulas) -> {
+            XSSFSheet sheet = wb.getSheet(sheetName);
+            sheetFormulas.forEach((row, rowFormulas) -> rowFormulas.forEach((column, formula) ->
+                    sheet.getRow(row).getCell(column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellFormula(formula)));
+        });
+        for (PendingFormula formula : formulas) {
+            String text = render(formula);
+            if (formula.name != null) {
+                formula.name.setRefersToFormula(text);
+                continue;
+            }
+            int rowIndex = resolve(formula.cell, false);
+            if (rowIndex > resolve(formula.cell, true)) continue;
+            XSSFRow row = wb.getSheet(formula.cell.sheetName).getRow(rowIndex);
+            if (row != null && row.getCell(formula.column) != null) {
+                row.getCell(formula.column).setCellFormula(text);
+            }
+        }
+        if (!formulas.isEmpty() || !blockFormulas.isEmpty()) {
+            wb.setForceFormulaRecalculation(true);
+        }
+    }
+
+    //Формулы в строках сложных ключей удаляются вместе со строкой, их пересчитывает POI
+    private void detach(XSSFSheet sheet, int startRow, int endRow, Predicate<String> isComplexKey) {
+        List<XSSFCell> cells = new ArrayList<>();
+        for (int i = startRow; i <= endRow; i++) {
+            XSSFRow row = sheet.getRow(i);
+            if (row == null || containsKey(row, isComplexKey)) continue;
+            for (Cell cell : row) {
+                if (cell.getCellType() == CellType.FORMULA && !cell.isPartOfArrayFormulaGroup()) {
+                    PendingFormula formula = compile(cell.getCellFormula(), FormulaType.CELL,
+                            wb.getSheetIndex(sheet), sheet.getSheetName());
+                    if (formula != null) {
+                        formula.cell = toPosition(sheet.getSheetName(), i);
+                        formula.column = cell.getColumnIndex();
+                        formulas.add(formula);
+                        cells.add((XSSFCell) cell);
+                    }
+                }
+            }
+        }
+        cells.forEach(this::removeFormula);
+    }
+
+    private void detachBlock(XSSFSheet sheet) {
+        List<XSSFCell> cells = new ArrayList<>();
+        for (Row row : sheet) {
+            for (Cell cell : row) {
+                if (cell.getCellType() == CellType.FORMULA && !cell.isPartOfArrayFormulaGroup()) {
+                    blockFormulas.computeIfAbsent(sheet.getSheetName(), name -> new HashMap<>())
+                            .computeIfAbsent(row.getRowNum(), rowNum -> new HashMap<>())
+                            .put(cell.getColumnIndex(), cell.getCellFormula());
+                    cells.add((XSSFCell) cell);
+                }
+            }
+        }
+        cells.forEach(this::removeFormula);
+    }
+
+    private boolean containsKey(XSSFRow row, Predicate<String> isComplexKey) {
+        for (Cell cell : row) {
+            if (cell.getCellType() == CellType.STRING && isComplexKey.test(cell.getStringCellValue())) return true;
+        }
+        return false;
+    }
+
+    private void removeFormula(XSSFCell cell) {
+        cell.removeFormula();
+        cell.setBlank();
+    }
+
+    private PendingFormula compile(String text, FormulaType type, int sheetIndex, String sheetName) {
+        Ptg[] ptgs;
+        try {
+            ptgs = FormulaParser.parse(text, evaluationWorkbook, type, sheetIndex);
+        } catch (FormulaParseException e) {
+            return null;
+        }
+        PendingFormula formula = new PendingFormula(ptgs);
+        for (int i = 0; i < ptgs.length; i++) {
+            String refSheet = getSheetName(ptgs[i], sheetName);
+            if (refSheet == null) continue;
+            if (ptgs[i] instanceof RefPtgBase) {
+                formula.first[i] = toPosition(refSheet, ((RefPtgBase) ptgs[i]).getRow());
+                formula.last[i] = formula.first[i];
+            } else if (ptgs[i] instanceof AreaPtgBase && !isWholeColumn((AreaPtgBase) ptgs[i])) {
+                formula.first[i] = toPosition(refSheet, ((AreaPtgBase) ptgs[i]).getFirstRow());
+                formula.last[i] = toPosition(refSheet, ((AreaPtgBase) ptgs[i]).getLastRow());
+            }
+        }
+        return formula;
+    }
+
+    //Ссылки на другие книги и на несколько листов сразу не пересчитываются
+    private String getSheetName(Ptg ptg, String sheetName) {
+        if (!(ptg instanceof Pxg)) return sheetName;
+        Pxg pxg = (Pxg) ptg;
+        if (pxg.getExternalWorkbookNumber() > 0) return null;
+        if (pxg instanceof Pxg3D && ((Pxg3D) pxg).getLastSheetName() != null) return null;
+        return pxg.getSheetName();
+    }
+
+    //Строки выше заполняемого ключа уже на своих местах, строки ниже запоминаются в координатах шаблона
+    private Position toPosition(String sheetName, int row) {
+        SheetShifts sheetShifts = shifts.get(sheetName);
+        if (sheetShifts == null) return new Position(sheetName, row, false);
+        int frontier = (sheetShifts == active) ? sheetShifts.cell.getRowIndex() : sheetShifts.frontier;
+        if (row < frontier) return new Position(sheetName, row, false);
+        int shift = sheetShifts.offset + ((sheetShifts == active) ? frontier - sheetShifts.start : 0);
+        return new Position(sheetName, row - shift, true);
+    }
+
+    private int resolve(Position position, boolean end) {
+        if (!position.template) return position.row;
+        SheetShifts sheetShifts = shifts.get(position.sheetName);
+        int row = position.row;
+        for (int delta : sheetShifts.deltas.headMap(position.row).values()) {
+            row += delta;
+        }
+        Integer delta = sheetShifts.deltas.get(position.row);
+        return (end && delta != null) ? row + delta : row;
+    }
+
+    private String render(PendingFormula formula) {
+        Ptg[] ptgs = formula.ptgs;
+        for (int i = 0; i < ptgs.length; i++) {
+            if (formula.first[i] == null) continue;
+            int first = resolve(formula.first[i], false);
+            int last = resolve(formula.last[i], true);
+            if (ptgs[i] instanceof RefPtgBase) {
+                if (last < first) ptgs[i] = createDeletedRef(ptgs[i]);
+                else ((RefPtgBase) ptgs[i]).setRow(first);
+            } else {
+                if (last < first) {
+                    ptgs[i] = createDeletedRef(ptgs[i]);
+                } else {
+                    ((AreaPtgBase) ptgs[i]).setFirstRow(first);
+                    ((AreaPtgBase) ptgs[i]).setLastRow(last);
+                }
+            }
+        }
+        return FormulaRenderer.toFormulaString(evaluationWorkbook, ptgs);
+    }
+
+    //Сдвигает относительные ссылки на строки; формула, которую не удалось разобрать, остается без изменений
+    static String shiftRows(XSSFEvaluationWorkbook evaluationWorkbook, String formula, int sheetIndex, int shift) {
+        return shift(evaluationWorkbook, formula, sheetIndex, shift, 0);
+    }
+
+    static String shift(XSSFEvaluationWorkbook evaluationWorkbook, String formula, int sheetIndex, int rowShift, int columnShift) {
+        Ptg[] ptgs;
+        try {
+            ptgs = FormulaParser.parse(formula, evaluationWorkbook, FormulaType.CELL, sheetIndex);
+        } catch (FormulaParseException e) {
+            return formula;
+        }
+        for (int i = 0; i < ptgs.length; i++) {
+            ptgs[i] = shiftRelative(ptgs[i], rowShift, columnShift);
+        }
+        return FormulaRenderer.toFormulaString(evaluationWorkbook, ptgs);
+    }
+
+    private static Ptg shiftRelative(Ptg ptg, int rowShift, int columnShift) {
+        if (ptg instanceof RefPtgBase) {
+            RefPtgBase ref = (RefPtgBase) ptg;
+            int row = ref.getRow() + (ref.isRowRelative() ? rowShift : 0);
+            int column = ref.getColumn() + (ref.isColRelative() ? columnShift : 0);
+            if (!isValidRow(row) || !isValidColumn(column)) return createDeletedRef(ptg);
+            ref.setRow(row);
+            ref.setColumn(column);
+        } else if (ptg instanceof AreaPtgBase) {
+            AreaPtgBase area = (AreaPtgBase) ptg;
+            if (!isWholeColumn(area)) {
+                int first = area.getFirstRow() + (area.isFirstRowRelative() ? rowShift : 0);
+                int last = area.getLastRow() + (area.isLastRowRelative() ? rowShift : 0);
+                if (!isValidRow(first) || !isValidRow(last)) return createDeletedRef(ptg);
+                area.setFirstRow(first);
+                area.setLastRow(last);
+            }
+            if (!isWholeRow(area)) {
+                int first = area.getFirstColumn() + (area.isFirstColRelative() ? columnShift : 0);
+                int last = area.getLastColumn() + (area.isLastColRelative() ? columnShift : 0);
+                if (!isValidColumn(first) || !isValidColumn(last)) return createDeletedRef(ptg);
+                area.setFirstColumn(first);
+                area.setLastColumn(last);
+            }
+        }
+        return ptg;
+    }
+
+    private static boolean isWholeColumn(AreaPtgBase area) {
+        return area.getFirstRow() == 0 && area.getLastRow() == LAST_ROW;
+    }
+
+    private static boolean isWholeRow(AreaPtgBase area) {
+        return area.getFirstColumn() == 0 && area.getLastColumn() == LAST_COLUMN;
+    }
+
+    private static boolean isValidColumn(int column) {
+        return column >= 0 && column <= LAST_COLUMN;
+    }
+
+    private static boolean isValidRow(int row) {
+        return row >= 0 && row <= LAST_ROW;
+    }
+
+    private static Ptg createDeletedRef(Ptg ptg) {
+        if (ptg instanceof Pxg) {
+            return new Deleted3DPxg(((Pxg) ptg).getExternalWorkbookNumber(), ((Pxg) ptg).getSheetName());
+        }
+        return (ptg instanceof RefPtgBase) ? new RefErrorPtg() : new AreaErrPtg();
+    }
+
+    private static class SheetShifts {
+        //Строка шаблона ключа верхнего уровня -> сколько строк добавило его заполнение
+        private final TreeMap<Integer, Integer> deltas = new TreeMap<>();
+        private int offset;
+        private int frontier;
+        private XSSFCell cell;
+        private int start;
+        private int row;
+        private int lastRowNum;
+    }
+
+    private static class Position {
+        private final String sheetName;
+        private final int row;
+        private final boolean template;
+
+        private Position(String sheetName, int row, boolean template) {
+            this.sheetName = sheetName;
+            this.row = row;
+            this.template = template;
+        }
+    }
+
+    private static class PendingFormula {
+        private final Ptg[] ptgs;
+        private final Position[] first;
+        private final Position[] last;
+        private Position cell;
+        private int column;
+        private XSSFName name;
+
+        private PendingFormula(Ptg[] ptgs) {
+            this.ptgs = ptgs;
+            this.first = new Position[ptgs.length];
+            this.last = new Position[ptgs.length];
+        }
+    }
+}
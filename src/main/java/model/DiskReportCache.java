@@ -0,0 +1,82 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+public class DiskReportCache implements ReportCache {
+
+    private static final String EXTENSION = ".xlsx";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> reports;
+    private long size;
+
+    public DiskReportCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.reports = new LinkedHashMap<>(16, 0.75f, true);
+        Files.createDirectories(directory);
+        loadEntries();
+    }
+
+    @Override
+    public synchronized byte[] get(String key) throws IOException {
+        if (reports.get(key) == null) {
+            return null;
+        }
+        Path path = getPath(key);
+        if (!Files.exists(path)) {
+            size -= reports.remove(key);
+            return null;
+        }
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public synchronized void put(String key, byte[] report) throws IOException {
+        if (report.length > maxBytes) {
+            return;
+        }
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        Files.write(temp, report);
+        Files.move(temp, getPath(key), StandardCopyOption.REPLACE_EXISTING);
+
+        Long previous = reports.put(key, (long) report.length);
+        if (previous != null) size -= previous;
+        size += report.length;
+
+        Iterator<Map.Entry<String, Long>> iterator = reports.entrySet().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            Files.deleteIfExists(getPath(entry.getKey()));
+            size -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void loadEntries() {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String name = file.getName();
+            reports.put(name.substring(0, name.length() - EXTENSION.length()), file.length());
+            size += file.length();
+        }
+    }
+
+    private Path getPath(String key) {
+        return directory.resolve(key + EXTENSION);
+    }
+}
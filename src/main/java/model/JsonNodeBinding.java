@@ -0,0 +1,38 @@
+package model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.AbstractList;
+import java.util.List;
+
+//Узлы - дерево Jackson. Jackson подключается как необязательная зависимость, класс загружается только при использовании
+public class JsonNodeBinding implements DataBinding {
+
+    @Override
+    public Object get(Object node, String field) {
+        if (!(node instanceof JsonNode)) return null;
+        JsonNode value = ((JsonNode) node).get(field);
+        if (value == null || value.isNull() || value.isMissingNode()) return null;
+        if (value.isTextual()) return value.textValue();
+        if (value.isNumber()) return value.numberValue();
+        if (value.isBoolean()) return value.booleanValue();
+        return value;
+    }
+
+    @Override
+    public List<?> getElements(Object node) {
+        if (!(node instanceof JsonNode) || !((JsonNode) node).isArray()) return null;
+        JsonNode array = (JsonNode) node;
+        return new AbstractList<JsonNode>() {
+            @Override
+            public JsonNode get(int index) {
+                return array.get(index);
+            }
+
+            @Override
+            public int size() {
+                return array.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.util.*;
+
+//Данные отчета, которые читаются из JSON по ходу заполнения. Свойства корневого объекта разбираются по запросу,
+//массивы корневого объекта отдаются сложным ключам по одному элементу. Память ограничена, пока свойства в файле
+//идут в порядке их использования в шаблоне: массив, через который пришлось пройти к следующему свойству, читается в память
+public class JsonStreamSource implements DataBinding, Closeable {
+
+    private final JsonParser parser;
+    private final JsonNodeBinding nodes = new JsonNodeBinding();
+    private final StreamedObject root = new StreamedObject();
+
+    public JsonStreamSource(File file) throws IOException {
+        this(new ObjectMapper().getFactory().createParser(file));
+    }
+
+    public JsonStreamSource(InputStream input) throws IOException {
+        this(new ObjectMapper().getFactory().createParser(input));
+    }
+
+    private JsonStreamSource(JsonParser parser) throws IOException {
+        this.parser = parser;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new IOException("The JSON data must be an object");
+        }
+    }
+
+    //Корневой узел для Report(data, type, binding), где binding - сам источник
+    public Object getRoot() {
+        return root;
+    }
+
+    @Override
+    public Object get(Object node, String field) {
+        if (node != root) return nodes.get(node, field);
+        try {
+            return root.get(field);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<?> getElements(Object node) {
+        return (node instanceof StreamedArray) ? null : nodes.getElements(node);
+    }
+
+    @Override
+    public Iterator<?> getIterator(Object node) {
+        return (node instanceof StreamedArray) ? ((StreamedArray) node).iterator() : null;
+    }
+
+    @Override
+    public boolean isSinglePass() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private Object readValue(JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getBooleanValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.readValueAsTree();
+        }
+    }
+
+    private class StreamedObject {
+        private final Map<String, Object> values = new HashMap<>();
+        private StreamedArray open;
+        private boolean finished;
+
+        private Object get(String field) throws IOException {
+            while (!values.containsKey(field) && !finished) {
+                readProperty();
+            }
+            return values.get(field);
+        }
+
+        private void readProperty() throws IOException {
+            if (open != null) {
+                open.readAll();
+                open = null;
+            }
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.FIELD_NAME) {
+                finished = true;
+                return;
+            }
+            String name = parser.getCurrentName();
+            token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                open = new StreamedArray();
+                values.put(name, open);
+            } else {
+                values.put(name, readValue(token));
+            }
+        }
+    }
+
+    //Массив корневого объекта: прочитанные элементы не хранятся, кроме уже разобранных, но не отданных.
+    //Элементы отдаются один раз: второй обход массива, например тот же ключ на другом листе, - ошибка
+    private class StreamedArray {
+        private final Deque<JsonNode> buffer = new ArrayDeque<>();
+        private boolean ended;
+        private boolean taken;
+
+        private Iterator<JsonNode> iterator() {
+            return new Iterator<JsonNode>() {
+                private boolean owner;
+
+                @Override
+                public boolean hasNext() {
+                    take();
+                    if (!buffer.isEmpty()) return true;
+                    if (ended) return false;
+                    try {
+                        readElement();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return !buffer.isEmpty();
+                }
+
+                @Override
+                public JsonNode next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return buffer.poll();
+                }
+
+                //Массив закрепляется за первым итератором, который начал его читать
+                private void take() {
+                    if (owner) return;
+                    if (taken) throw new IllegalStateException("The streamed JSON array can be read only once");
+                    taken = true;
+                    owner = true;
+                }
+            };
+        }
+
+        private void readElement() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY || token == null) {
+                ended = true;
+                if (root.open == this) root.open = null;
+            } else {
+                buffer.add(parser.readValueAsTree());
+            }
+        }
+
+        private void readAll() throws IOException {
+            while (!ended) {
+                readElement();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package model;
+
+import java.lang.reflect.Field;
+
+@FunctionalInterface
+public interface KeyAccessor {
+
+    Object get(Object target) throws IllegalAccessException;
+
+    static KeyAccessor field(Field field) {
+        field.setAccessible(true);
+        return field::get;
+    }
+
+    //Используется сгенерированными дескрипторами для приватных полей без геттера
+    static KeyAccessor field(Class<?> type, String name) {
+        try {
+            return field(type.getDeclaredField(name));
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("The descriptor does not match the class " + type.getName(), e);
+        }
+    }
+}
@@ -9,21 +9,71 @@ public class KeyData {
     private final String name;
     private final String description;
     private final ReportKey reportKey;
-    private final Field field;
+    private final Class<?> ownerType;
+    private final Class<?> elementType;
+    private final KeyAccessor accessor;
+    private final String fieldName;
 
-    public KeyData(String name, String description, ReportKey reportKey, Field field) {
+    public KeyData(String name, String description, ReportKey reportKey, Field field, Class<?> elementType) {
+        this(name, description, reportKey, field.getDeclaringClass(), elementType, KeyAccessor.field(field), field.getName());
+    }
+
+    public KeyData(String name, String description, ReportKey reportKey,
+                   Class<?> ownerType, Class<?> elementType, KeyAccessor accessor) {
+        this(name, description, reportKey, ownerType, elementType, accessor, null);
+    }
+
+    public KeyData(String name, String description, ReportKey reportKey,
+                   Class<?> ownerType, Class<?> elementType, KeyAccessor accessor, String fieldName) {
         this.name = name;
         this.description = description;
         this.reportKey = reportKey;
-        this.field = field;
+        this.ownerType = ownerType;
+        this.elementType = elementType;
+        this.accessor = accessor;
+        this.fieldName = (fieldName != null) ? fieldName : getFieldName(name, ownerType);
+    }
+
+    //Для дескрипторов без имени поля оно восстанавливается из имени ключа по умолчанию
+    private static String getFieldName(String name, Class<?> ownerType) {
+        for (String prefix : new String[]{"key_", Report.COMPLEX_KEY}) {
+            String ownerPrefix = prefix + ownerType.getSimpleName() + "_";
+            if (name.startsWith(ownerPrefix)) return name.substring(ownerPrefix.length());
+        }
+        return name;
+    }
+
+    public Object getValue(Object target) throws IllegalAccessException {
+        if (target instanceof BoundNode) {
+            BoundNode node = (BoundNode) target;
+            if (node.getType() != ownerType) {
+                throw new IllegalArgumentException("The object is not an instance of " + ownerType.getName());
+            }
+            return node.get(this);
+        }
+        if (target instanceof ColumnarBatch.Row) {
+            ColumnarBatch<?>.Row row = (ColumnarBatch<?>.Row) target;
+            if (row.getType() != ownerType) {
+                throw new IllegalArgumentException("The object is not an instance of " + ownerType.getName());
+            }
+            return row.get(name);
+        }
+        if (!ownerType.isInstance(target)) {
+            throw new IllegalArgumentException("The object is not an instance of " + ownerType.getName());
+        }
+        return accessor.get(target);
     }
 
     public ReportKey getReportKey() {
         return reportKey;
     }
 
-    public Field getField() {
-        return field;
+    public Class<?> getOwnerType() {
+        return ownerType;
+    }
+
+    public Class<?> getElementType() {
+        return elementType;
     }
 
     public String getName() {
@@ -33,4 +83,8 @@ public class KeyData {
     public String getDescription() {
         return description;
     }
+
+    public String getFieldName() {
+        return fieldName;
+    }
 }
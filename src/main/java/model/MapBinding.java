@@ -0,0 +1,24 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+//Узлы - Map с именами полей в качестве ключей, списки - List или другие коллекции
+class MapBinding implements DataBinding {
+
+    static final MapBinding INSTANCE = new MapBinding();
+
+    @Override
+    public Object get(Object node, String field) {
+        return (node instanceof Map) ? ((Map<?, ?>) node).get(field) : null;
+    }
+
+    @Override
+    public List<?> getElements(Object node) {
+        if (node instanceof List) return (List<?>) node;
+        if (node instanceof Collection) return new ArrayList<>((Collection<?>) node);
+        return null;
+    }
+}
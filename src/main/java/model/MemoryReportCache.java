@@ -0,0 +1,42 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MemoryReportCache implements ReportCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> reports;
+    private long size;
+
+    public MemoryReportCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.reports = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public synchronized byte[] get(String key) {
+        return reports.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, byte[] report) {
+        if (report.length > maxBytes) {
+            return;
+        }
+        byte[] previous = reports.put(key, report);
+        if (previous != null) size -= previous.length;
+        size += report.length;
+
+        Iterator<Map.Entry<String, byte[]>> iterator = reports.entrySet().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            size -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,248 @@
+package model;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+//POI пишет пакет в переданный ZipArchiveOutputStream без обертки, поэтому части пакета
+//накапливаются здесь, сжимаются в пуле потоков и записываются в исходном порядке.
+//Часть больше порога в памяти не копится: она сжимается потоком самим ZipArchiveOutputStream
+public class ParallelZipOutputStream extends ZipArchiveOutputStream {
+
+    static final int STREAM_THRESHOLD = 64 * 1024 * 1024;
+    private static final String MEDIA_PATH = "xl/media/";
+    private static final String[] COMPRESSED_MEDIA = {".png", ".jpg", ".jpeg", ".gif"};
+
+    private final ExecutorService executor;
+    private final int streamThreshold;
+    private final Deque<Future<ZipPart>> parts = new ArrayDeque<>();
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private boolean storeMedia;
+    private ZipArchiveEntry entry;
+    private ByteArrayOutputStream buffer;
+    private boolean streaming;
+    //Запись родителя остается открытой после сбоя, и его putArchiveEntry закрывает ее через closeArchiveEntry,
+    //а closeArchiveEntry родителя дописывает пустую запись через write. Такие вызовы передаются родителю
+    private boolean superEntry;
+    private boolean finished;
+
+    public ParallelZipOutputStream(OutputStream output, int threads) {
+        this(output, threads, STREAM_THRESHOLD);
+    }
+
+    ParallelZipOutputStream(OutputStream output, int threads, int streamThreshold) {
+        super(output);
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        this.streamThreshold = streamThreshold;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = (threads == 1) ? null : Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "report-zip-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void setLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+        super.setLevel(level);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isStoreMedia() {
+        return storeMedia;
+    }
+
+    public void setStoreMedia(boolean storeMedia) {
+        this.storeMedia = storeMedia;
+    }
+
+    @Override
+    public void putArchiveEntry(ArchiveEntry archiveEntry) throws IOException {
+        if (finished) {
+            throw new IOException("Stream has already been finished");
+        }
+        if (entry != null) {
+            closeArchiveEntry();
+        }
+        entry = (ZipArchiveEntry) archiveEntry;
+        buffer = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        if (superEntry || streaming) {
+            super.write(b, offset, length);
+            return;
+        }
+        if (entry == null) {
+            throw new IllegalStateException("No current entry");
+        }
+        buffer.write(b, offset, length);
+        if (buffer.size() >= streamThreshold && !isStored(entry.getName())) {
+            startStreaming();
+        }
+    }
+
+    @Override
+    public void closeArchiveEntry() throws IOException {
+        if (superEntry) {
+            super.closeArchiveEntry();
+            return;
+        }
+        if (entry == null) {
+            throw new IOException("No current entry to close");
+        }
+        ZipArchiveEntry zipEntry = entry;
+        entry = null;
+        if (streaming) {
+            superEntry = true;
+            try {
+                super.closeArchiveEntry();
+            } finally {
+                superEntry = false;
+                streaming = false;
+            }
+            return;
+        }
+        byte[] data = buffer.toByteArray();
+        buffer = null;
+        if (executor == null) {
+            parts.add(CompletableFuture.completedFuture(compress(zipEntry, data)));
+        } else {
+            parts.add(executor.submit(() -> compress(zipEntry, data)));
+        }
+        writeParts(false);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            if (entry != null) {
+                closeArchiveEntry();
+            }
+            writeParts(true);
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
+        super.finish();
+    }
+
+    //Большая часть пишется после всех предыдущих, уже накопленное начало сжимается вместе с остальным
+    private void startStreaming() throws IOException {
+        writeParts(true);
+        ZipArchiveEntry streamedEntry = new ZipArchiveEntry(entry.getName());
+        if (entry.getTime() != -1) streamedEntry.setTime(entry.getTime());
+        streamedEntry.setMethod(ZipEntry.DEFLATED);
+        superEntry = true;
+        try {
+            super.putArchiveEntry(streamedEntry);
+        } finally {
+            superEntry = false;
+        }
+        streaming = true;
+        byte[] data = buffer.toByteArray();
+        buffer = null;
+        super.write(data, 0, data.length);
+    }
+
+    //Готовые части записываются сразу, чтобы не держать в памяти весь пакет
+    private void writeParts(boolean wait) throws IOException {
+        while (!parts.isEmpty() && (wait || parts.peek().isDone())) {
+            ZipPart part;
+            try {
+                part = parts.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("The package compression was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to compress the package part", e.getCause());
+            }
+            superEntry = true;
+            try {
+                addRawArchiveEntry(part.entry, new ByteArrayInputStream(part.data));
+            } finally {
+                superEntry = false;
+            }
+        }
+    }
+
+    private ZipPart compress(ZipArchiveEntry zipEntry, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipArchiveEntry rawEntry = new ZipArchiveEntry(zipEntry.getName());
+        if (zipEntry.getTime() != -1) rawEntry.setTime(zipEntry.getTime());
+        rawEntry.setSize(data.length);
+        rawEntry.setCrc(crc.getValue());
+        if (isStored(zipEntry.getName())) {
+            rawEntry.setMethod(ZipEntry.STORED);
+            rawEntry.setCompressedSize(data.length);
+            return new ZipPart(rawEntry, data);
+        }
+
+        Deflater deflater = new Deflater(level, true);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + 64);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                output.write(chunk, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+        rawEntry.setMethod(ZipEntry.DEFLATED);
+        rawEntry.setCompressedSize(output.size());
+        return new ZipPart(rawEntry, output.toByteArray());
+    }
+
+    private boolean isStored(String name) {
+        return storeMedia && isCompressedMedia(name);
+    }
+
+    private boolean isCompressedMedia(String name) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        if (!lowerName.startsWith(MEDIA_PATH)) return false;
+        for (String extension : COMPRESSED_MEDIA) {
+            if (lowerName.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    private static class ZipPart {
+        private final ZipArchiveEntry entry;
+        private final byte[] data;
+
+        private ZipPart(ZipArchiveEntry entry, byte[] data) {
+            this.entry = entry;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package model;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.*;
+import org.apache.xmlbeans.XmlCursor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+
+//Книга, в которой поток заполняет свой диапазон списка: XSSFWorkbook нельзя использовать из нескольких потоков.
+//Шаблон повторно не разбирается: в книгу переносятся только листы блоков и форматы стилей под теми же индексами.
+//Заполненные строки отдаются как CTRow с номерами строк и индексами общих строк книги отчета
+class PartitionWorkbook implements Closeable {
+
+    //Закрытые члены POI, через которые строки подключаются к листу; они же перечислены в reflect-config.json для native-image
+    static final String[] SHEET_FIELDS = {"_rows"};
+    private static final Field SHEET_ROWS;
+    private static final Constructor<XSSFRow> ROW_CONSTRUCTOR;
+
+    static {
+        Field rows;
+        Constructor<XSSFRow> constructor;
+        try {
+            rows = XSSFSheet.class.getDeclaredField(SHEET_FIELDS[0]);
+            rows.setAccessible(true);
+            constructor = XSSFRow.class.getDeclaredConstructor(CTRow.class, XSSFSheet.class);
+            constructor.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            rows = null;
+            constructor = null;
+        }
+        SHEET_ROWS = rows;
+        ROW_CONSTRUCTOR = constructor;
+    }
+
+    private final XSSFWorkbook wb = new XSSFWorkbook();
+    private final XSSFSheet fragment;
+    private final BitSet usedStrings = new BitSet();
+
+    //Создается в основном потоке: читает стили и листы блоков книги отчета
+    PartitionWorkbook(XSSFWorkbook source, Collection<String> blockSheets) {
+        //При заполнении из стиля читается только формат данных: дата пишется текстом или числом
+        XSSFDataFormat dataFormat = wb.createDataFormat();
+        for (int i = 0; i < source.getNumCellStyles(); i++) {
+            XSSFCellStyle style = (i == 0) ? wb.getCellStyleAt(0) : wb.createCellStyle();
+            style.setDataFormat(dataFormat.getFormat(source.getCellStyleAt(i).getDataFormatString()));
+        }
+        for (String sheetName : blockSheets) {
+            copySheet(source.getSheet(sheetName));
+        }
+        fragment = wb.createSheet();
+    }
+
+    XSSFWorkbook getWorkbook() {
+        return wb;
+    }
+
+    XSSFSheet getFragment() {
+        return fragment;
+    }
+
+    int getRowCount() {
+        return fragment.getLastRowNum() + 1;
+    }
+
+    //Вызывается в потоке диапазона после заполнения: в таблицу отчета переносятся только использованные строки
+    void collectStrings() {
+        for (Row row : fragment) {
+            for (Cell cell : row) {
+                CTCell ctCell = ((XSSFCell) cell).getCTCell();
+                if (ctCell.getT() == STCellType.S && ctCell.isSetV()) usedStrings.set(Integer.parseInt(ctCell.getV()));
+            }
+        }
+    }
+
+    //Вызывается в основном потоке: индексы общих строк фрагмента в таблице отчета
+    int[] mapStrings(SharedStringsTable target) {
+        SharedStringsTable strings = wb.getSharedStringSource();
+        int[] indexes = new int[strings.getUniqueCount()];
+        for (int i = usedStrings.nextSetBit(0); i >= 0; i = usedStrings.nextSetBit(i + 1)) {
+            indexes[i] = target.addSharedStringItem(strings.getItemAt(i));
+        }
+        return indexes;
+    }
+
+    //Вызывается в потоке диапазона: строки фрагмента получают место в листе отчета, начиная со строки startRow
+    List<CTRow> createRows(int startRow, int[] strings) {
+        List<CTRow> rows = new ArrayList<>();
+        for (Row row : fragment) {
+            int rowIndex = startRow + row.getRowNum();
+            String rowNumber = Integer.toString(rowIndex + 1);
+            for (Cell cell : row) {
+                CTCell ctCell = ((XSSFCell) cell).getCTCell();
+                ctCell.setR(CellReference.convertNumToColString(cell.getColumnIndex()) + rowNumber);
+                if (ctCell.getT() == STCellType.S && ctCell.isSetV()) {
+                    ctCell.setV(Integer.toString(strings[Integer.parseInt(ctCell.getV())]));
+                }
+            }
+            CTRow ctRow = ((XSSFRow) row).getCTRow();
+            ctRow.setR(rowIndex + 1L);
+            rows.add(ctRow);
+        }
+        return rows;
+    }
+
+    //Без доступа к строкам листа списки заполняются последовательно
+    static boolean isSupported() {
+        return SHEET_ROWS != null && ROW_CONSTRUCTOR != null;
+    }
+
+    //Вызывается в основном потоке, когда место под строки на листе уже освобождено. Строки копируются в sheetData
+    //одним проходом курсора, а их обертки добавляются в лист без пересборки всех строк листа, как в shiftRows
+    @SuppressWarnings("unchecked")
+    static void attachRows(XSSFSheet sheet, List<CTRow> rows) throws ReflectiveOperationException {
+        if (rows.isEmpty()) return;
+        SortedMap<Integer, XSSFRow> sheetRows = (SortedMap<Integer, XSSFRow>) SHEET_ROWS.get(sheet);
+        SortedMap<Integer, XSSFRow> nextRows = sheetRows.tailMap((int) rows.get(rows.size() - 1).getR());
+        XmlCursor cursor;
+        if (nextRows.isEmpty()) {
+            cursor = sheet.getCTWorksheet().getSheetData().newCursor();
+            cursor.toEndToken();
+        } else {
+            cursor = nextRows.get(nextRows.firstKey()).getCTRow().newCursor();
+        }
+        try {
+            for (CTRow row : rows) {
+                XmlCursor source = row.newCursor();
+                source.copyXml(cursor);
+                source.dispose();
+                cursor.toPrevSibling();
+                CTRow copy = (CTRow) cursor.getObject();
+                cursor.toEndToken();
+                cursor.toNextToken();
+                sheetRows.put((int) copy.getR() - 1, ROW_CONSTRUCTOR.newInstance(copy, sheet));
+            }
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    List<CellRangeAddress> getMergedRegions(int startRow) {
+        List<CellRangeAddress> mergedRegions = new ArrayList<>();
+        for (CellRangeAddress mergedRegion : fragment.getMergedRegions()) {
+            mergedRegions.add(new CellRangeAddress(mergedRegion.getFirstRow() + startRow, mergedRegion.getLastRow() + startRow,
+                    mergedRegion.getFirstColumn(), mergedRegion.getLastColumn()));
+        }
+        return mergedRegions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        wb.close();
+    }
+
+    //Ячейки переносятся вместе со стилем, общие строки - через таблицу этой книги
+    private void copySheet(XSSFSheet source) {
+        XSSFSheet sheet = wb.createSheet(source.getSheetName());
+        sheet.setDefaultRowHeight(source.getDefaultRowHeight());
+        for (Row sourceRow : source) {
+            XSSFRow row = sheet.createRow(sourceRow.getRowNum());
+            if (((XSSFRow) sourceRow).getCTRow().isSetHt()) row.setHeight(sourceRow.getHeight());
+            for (Cell sourceCell : sourceRow) {
+                XSSFCell cell = row.createCell(sourceCell.getColumnIndex());
+                cell.getCTCell().set(((XSSFCell) sourceCell).getCTCell());
+                if (sourceCell.getCellType() == CellType.STRING && cell.getCTCell().getT() == STCellType.S) {
+                    cell.setCellValue(sourceCell.getRichStringCellValue());
+                }
+            }
+        }
+        for (CellRangeAddress mergedRegion : source.getMergedRegions()) {
+            sheet.addMergedRegionUnsafe(mergedRegion);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package model;
+
+@FunctionalInterface
+public interface ProgressListener {
+
+    void onProgress(String key, int rows, int total);
+
+}
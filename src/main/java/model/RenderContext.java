@@ -0,0 +1,64 @@
+package model;
+
+import exception.ReportCancelledException;
+import exception.ReportDeadlineException;
+
+import java.time.Instant;
+
+//Отмена, срок и прогресс заполнения. Состояние самого заполнения хранится в RenderState,
+//поэтому один контекст можно передать нескольким заполнениям
+public class RenderContext {
+
+    private volatile boolean cancelled;
+    private Instant deadline;
+    private long deadlineMillis = Long.MAX_VALUE;
+    private ProgressListener progressListener;
+
+    public RenderContext() {
+    }
+
+    public RenderContext(Instant deadline, ProgressListener progressListener) {
+        setDeadline(deadline);
+        setProgressListener(progressListener);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Instant deadline) {
+        this.deadline = deadline;
+        this.deadlineMillis = (deadline == null) ? Long.MAX_VALUE : deadline.toEpochMilli();
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    void checkCancelled() throws ReportCancelledException {
+        if (cancelled) {
+            throw new ReportCancelledException("The report rendering was cancelled.");
+        }
+        if (System.currentTimeMillis() > deadlineMillis) {
+            throw new ReportDeadlineException("The report rendering deadline has passed.");
+        }
+    }
+
+    synchronized void reportProgress(String key, int rows, int total) {
+        if (progressListener != null) {
+            progressListener.onProgress(key, rows, total);
+        }
+    }
+}
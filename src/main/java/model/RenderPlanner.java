@@ -0,0 +1,34 @@
+package model;
+
+import java.time.Duration;
+
+public class RenderPlanner {
+
+    public static final long TEMPLATE_EXPANSION = 20;
+    public static final long BYTES_PER_CELL = 1024;
+    public static final long NANOS_PER_CELL = 20_000;
+    public static final long NANOS_PER_INSERTED_ROW = 50_000;
+
+    private final long templateExpansion;
+    private final long bytesPerCell;
+
+    public RenderPlanner() {
+        this(TEMPLATE_EXPANSION, BYTES_PER_CELL);
+    }
+
+    public RenderPlanner(long templateExpansion, long bytesPerCell) {
+        this.templateExpansion = templateExpansion;
+        this.bytesPerCell = bytesPerCell;
+    }
+
+    //Размер потоковых данных заранее неизвестен: такой отчет считается больше любого бюджета
+    public long estimateMemory(Report report, long templateSize) {
+        long cells = report.countDataCells();
+        if (cells < 0) return Long.MAX_VALUE;
+        return templateSize * templateExpansion + cells * bytesPerCell;
+    }
+
+    public Duration estimateTime(long cells, long insertedRows) {
+        return Duration.ofNanos(cells * NANOS_PER_CELL + insertedRows * NANOS_PER_INSERTED_ROW);
+    }
+}
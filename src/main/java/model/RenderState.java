@@ -0,0 +1,57 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Состояние одного заполнения книги. Создается на каждое заполнение и передается рядом с RenderContext,
+//поэтому один контекст можно отдать нескольким заполнениям сразу
+class RenderState {
+
+    private final TextCardinality textCardinality;
+    private final DeferredFormulas formulas;
+    private final BlockRules blockRules;
+    //Итоги последних раскрытых списков по ключам полей
+    private final Map<String, Aggregates.Accumulator> aggregates = new HashMap<>();
+
+    RenderState(DeferredFormulas formulas, BlockRules blockRules) {
+        this.textCardinality = new TextCardinality();
+        this.formulas = formulas;
+        this.blockRules = blockRules;
+    }
+
+    //Состояние диапазона параллельного заполнения: формулы, правила и оценка текста общие, итоги свои
+    private RenderState(RenderState parent) {
+        this.textCardinality = parent.textCardinality;
+        this.formulas = parent.formulas;
+        this.blockRules = parent.blockRules;
+    }
+
+    RenderState createPartition() {
+        return new RenderState(this);
+    }
+
+    TextCardinality getTextCardinality() {
+        return textCardinality;
+    }
+
+    DeferredFormulas getFormulas() {
+        return formulas;
+    }
+
+    BlockRules getBlockRules() {
+        return blockRules;
+    }
+
+    void putAggregates(Aggregates listAggregates) {
+        aggregates.putAll(listAggregates.getAccumulators());
+    }
+
+    //Итоги диапазона переносятся после его заполнения, диапазоны переносятся по порядку
+    void putAggregates(RenderState partition) {
+        aggregates.putAll(partition.aggregates);
+    }
+
+    Aggregates.Accumulator getAccumulator(String key) {
+        return aggregates.get(key);
+    }
+}
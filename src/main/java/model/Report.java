@@ -1,39 +1,176 @@
 package model;
 
 import annotation.ReportKey;
+import enums.Aggregate;
 import enums.DataType;
+import enums.Direction;
 import enums.KeyType;
+import enums.TextStorage;
 import exception.*;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellCopyPolicy;
 import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.SheetVisibility;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.usermodel.*;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTTwoCellAnchor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
 
 import java.io.*;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 public class Report {
 
-    private static final String COMPLEX_KEY = "complex_";
-    private static final String DATABASE_KEY = "REPORT_KEYS";
-    private static final String COUNTER_KEY = "key_counter";
+    static final String COMPLEX_KEY = "complex_";
+    static final String DATABASE_KEY = "REPORT_KEYS";
+    static final String COUNTER_KEY = "key_counter";
+    static final String GROUP_HEADER = "_header";
+    static final String GROUP_FOOTER = "_footer";
     public static final double PIXEL_TO_ROW_HEIGHT = 15.0;
+    static final int MIN_PARTITION_SIZE = 100;
+    private static final long GREGORIAN_CHANGE = new GregorianCalendar().getGregorianChange().getTime();
 
     private final Object reportData;
     private final Map<String, KeyData> keysMap;
     private final Set<String> complexKeys;
     private final Set<Class<?>> classes;
+    private final Map<Class<?>, List<KeyData>> classKeys;
+    private final Map<String, TextTemplate> textTemplates;
+    private final Map<String, AggregateKey> aggregateKeys;
+    private final Set<String> groupSheets;
+    private int maxRowsPerSheet = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private int parallelism = 1;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean storeImages;
+    private boolean compactOutput;
+    private TextStorage textStorage = TextStorage.SHARED;
+    private boolean appendable;
 
     public Report(Object reportData) throws ReportKeyException {
+        this(reportData, reportData.getClass());
+    }
+
+    //Данные в виде Map или дерева JSON заполняют ключи типа type без копирования в объекты этого типа
+    public Report(Object reportData, Class<?> type, DataBinding binding) throws ReportKeyException {
+        this(bind(reportData, type, binding), type);
+    }
+
+    private static BoundNode bind(Object reportData, Class<?> type, DataBinding binding) {
+        if (reportData == null || type == null || binding == null) {
+            throw new IllegalArgumentException("The data, its type and the binding must not be null");
+        }
+        return new BoundNode(type, reportData, binding);
+    }
+
+    private Report(Object reportData, Class<?> type) throws ReportKeyException {
         this.reportData = reportData;
         this.keysMap = new HashMap<>();
         this.complexKeys = new HashSet<>();
         this.classes = new HashSet<>();
-        fillKeysMap(reportData.getClass());
+        this.classKeys = new HashMap<>();
+        this.textTemplates = new ConcurrentHashMap<>();
+        this.aggregateKeys = new HashMap<>();
+        this.groupSheets = new HashSet<>();
+        fillKeysMap(type);
+        classKeys.values().forEach(keys -> keys.sort(Comparator.comparing(KeyData::getName)));
+    }
+
+    public static void warmUp() throws IOException {
+        new ReportWarmUp().run();
+    }
+
+    public int getMaxRowsPerSheet() {
+        return maxRowsPerSheet;
+    }
+
+    //Если раскрытие сложного ключа верхнего уровня не помещается в лист,
+    //заполненные строки переносятся на лист-продолжение с повтором заголовка
+    public void setMaxRowsPerSheet(int maxRowsPerSheet) {
+        if (maxRowsPerSheet <= 0 || maxRowsPerSheet > SpreadsheetVersion.EXCEL2007.getMaxRows()) {
+            throw new IllegalArgumentException("The row limit must be between 1 and " + SpreadsheetVersion.EXCEL2007.getMaxRows());
+        }
+        this.maxRowsPerSheet = maxRowsPerSheet;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    //Большие списки сложных ключей верхнего уровня делятся на диапазоны,
+    //каждый диапазон заполняется в своей копии шаблона и затем вставляется в лист
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isStoreImages() {
+        return storeImages;
+    }
+
+    //Изображения png, jpeg и gif уже сжаты и записываются в пакет без повторного сжатия
+    public void setStoreImages(boolean storeImages) {
+        this.storeImages = storeImages;
+    }
+
+    public boolean isCompactOutput() {
+        return compactOutput;
+    }
+
+    //Перед записью из книги удаляются строки, стили и изображения без ссылок
+    public void setCompactOutput(boolean compactOutput) {
+        this.compactOutput = compactOutput;
+    }
+
+    public TextStorage getTextStorage() {
+        return textStorage;
+    }
+
+    //Способ записи текстовых ключей, у которых в аннотации оставлено значение DEFAULT
+    public void setTextStorage(TextStorage textStorage) {
+        this.textStorage = (textStorage == null || textStorage == TextStorage.DEFAULT) ? TextStorage.SHARED : textStorage;
+    }
+
+    public boolean isAppendable() {
+        return appendable;
+    }
+
+    //Листы сложных ключей остаются в отчете скрытыми, а места вставки списков сохраняются в свойствах книги,
+    //чтобы в отчет можно было дописать новые элементы через appendReport
+    public void setAppendable(boolean appendable) {
+        this.appendable = appendable;
     }
 
     public void createTemplate(String path) throws IOException {
@@ -42,6 +179,10 @@ public class Report {
         keysMap.forEach((key, value) -> {
             if (value.getReportKey().keyType() == KeyType.COMPLEX) {
                 wb.createSheet(key);
+                if (!value.getReportKey().groupBy().isEmpty()) {
+                    wb.createSheet(key + GROUP_HEADER);
+                    wb.createSheet(key + GROUP_FOOTER);
+                }
             }
         });
         XSSFSheet sheet = wb.createSheet(DATABASE_KEY);
@@ -54,66 +195,402 @@ public class Report {
     }
 
     public void createReport(InputStream template, File file) throws IOException, IncorrectTemplateException, ReportKeyException {
+        try {
+            createReport(template, file, new RenderContext());
+        } catch (ReportCancelledException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void createReport(InputStream template, File file, RenderContext context) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
         XSSFWorkbook wb = new XSSFWorkbook(template);
+        fillWorkbook(wb, context);
+
+        FileOutputStream fileOutput = new FileOutputStream(file);
+        writeWorkbook(wb, fileOutput);
+        wb.close();
+        fileOutput.close();
+    }
+
+    public void appendReport(File file) throws IOException, IncorrectTemplateException, ReportKeyException {
+        try {
+            appendReport(file, new RenderContext());
+        } catch (ReportCancelledException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //Элементы списков сложных ключей верхнего уровня дописываются после ранее заполненных, счетчик продолжается
+    public void appendReport(File file, RenderContext context) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        XSSFWorkbook wb;
+        try (InputStream input = new FileInputStream(file)) {
+            wb = new XSSFWorkbook(input);
+        }
+        try {
+            List<ReportAnchor> anchors = ReportAnchor.read(wb);
+            if (anchors.isEmpty()) {
+                throw new IncorrectTemplateException("The report was not created in the appendable mode.");
+            }
+            //Списки заполняются снизу вверх, чтобы вставленные строки не сдвигали необработанные места вставки
+            RenderState state = new RenderState(null, null);
+            List<ReportAnchor> ordered = new ArrayList<>(anchors);
+            ordered.sort(Comparator.comparingInt(ReportAnchor::getRow).reversed());
+            for (ReportAnchor anchor : ordered) {
+                context.checkCancelled();
+                XSSFSheet sheet = wb.getSheet(anchor.getSheetName());
+                if (sheet == null || !keysMap.containsKey(anchor.getKey()) || wb.getSheet(anchor.getKey()) == null) {
+                    throw new IncorrectTemplateException("The report does not contain the complex key " + anchor.getKey() + ".");
+                }
+                XSSFCell cell = createAnchorCell(sheet, anchor);
+                ReportAnchor appended = createAnchor(cell, anchor.getCount());
+                appended.setInserted(fillComplexKey(cell, reportData, context, state, anchor.getCount()));
+                int shift = appended.update(sheet) + (anchor.isKeyRow() ? 0 : 1);
+                for (ReportAnchor other : anchors) {
+                    if (other != anchor && other.getSheetName().equals(anchor.getSheetName()) && other.getRow() > anchor.getRow()) {
+                        other.shift(shift);
+                    }
+                }
+                anchors.set(anchors.indexOf(anchor), appended);
+            }
+            ReportAnchor.save(wb, anchors);
+
+            //Отчет записывается во временный файл, чтобы при ошибке не потерять исходный
+            File tempFile = File.createTempFile("report", ".xlsx", file.getAbsoluteFile().getParentFile());
+            try {
+                try (OutputStream output = new FileOutputStream(tempFile)) {
+                    writeWorkbook(wb, output);
+                }
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } finally {
+            wb.close();
+        }
+    }
+
+    public void createReport(InputStream template, File file, ReportCache cache) throws IOException, IncorrectTemplateException, ReportKeyException {
+        byte[] templateBytes = template.readAllBytes();
+        if (isSinglePass()) {
+            createReport(new ByteArrayInputStream(templateBytes), file);
+            return;
+        }
+        String cacheKey = new ReportFingerprint(classKeys).compute(templateBytes, this, reportData);
+        if (cacheKey == null) {
+            createReport(new ByteArrayInputStream(templateBytes), file);
+            return;
+        }
+        byte[] cachedReport = cache.get(cacheKey);
+        if (cachedReport != null) {
+            Files.write(file.toPath(), cachedReport);
+            return;
+        }
+        createReport(new ByteArrayInputStream(templateBytes), file);
+        cache.put(cacheKey, Files.readAllBytes(file.toPath()));
+    }
+
+    public ReportPlan explain(InputStream template) throws IOException, IncorrectTemplateException {
+        byte[] templateBytes = template.readAllBytes();
+        XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(templateBytes));
+        checkCorrectnessFillingTemplate(wb);
+
+        ReportPlan plan = new ReportPlan();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            XSSFSheet sheet = wb.getSheetAt(i);
+            if (!sheet.getSheetName().equals(DATABASE_KEY) && !isKeySheet(sheet.getSheetName())) {
+                for (XSSFCell cell : getCellListWithKey(sheet, 0, sheet.getLastRowNum())) {
+                    explainCell(cell, reportData, plan);
+                }
+            }
+        }
+        wb.close();
+
+        RenderPlanner planner = new RenderPlanner();
+        plan.setEstimatedMemory(planner.estimateMemory(this, templateBytes.length));
+        plan.setEstimatedTime(planner.estimateTime(plan.getTotalCells(), plan.getTotalInsertedRows()));
+        return plan;
+    }
+
+    //Количество ячеек, заполняемых данными, с учетом размеров всех комплексных списков.
+    //Данные, которые читаются один раз, не обходятся: их размер неизвестен и возвращается -1
+    long countDataCells() {
+        return isSinglePass() ? -1 : countDataCells(reportData);
+    }
+
+    private boolean isSinglePass() {
+        return reportData instanceof BoundNode && ((BoundNode) reportData).isSinglePass();
+    }
+
+    private long countDataCells(Object data) {
+        List<KeyData> keys = (data == null) ? null : classKeys.get(getDataType(data));
+        if (keys == null) {
+            return 0;
+        }
+        long cells = 0;
+        for (KeyData keyData : keys) {
+            if (keyData.getReportKey().keyType() == KeyType.COMPLEX) {
+                Object value;
+                try {
+                    value = keyData.getValue(data);
+                } catch (IllegalAccessException e) {
+                    value = null;
+                }
+                List<?> list = getElements(value);
+                if (list != null) {
+                    for (Object element : list) {
+                        cells += countDataCells(element) + 1;
+                    }
+                }
+            } else {
+                cells++;
+            }
+        }
+        return cells;
+    }
+
+    //Части пакета сжимаются в собственном пуле ParallelZipOutputStream из parallelism потоков.
+    //Поток закрывается и при ошибке записи, иначе пул не останавливается
+    private void writeWorkbook(XSSFWorkbook wb, OutputStream output) throws IOException {
+        if (parallelism == 1 && compressionLevel == Deflater.DEFAULT_COMPRESSION && !storeImages) {
+            wb.write(output);
+            return;
+        }
+        try (ParallelZipOutputStream zipOutput = new ParallelZipOutputStream(output, parallelism)) {
+            zipOutput.setLevel(compressionLevel);
+            zipOutput.setStoreMedia(storeImages);
+            wb.write(zipOutput);
+        }
+    }
+
+    private void fillWorkbook(XSSFWorkbook wb, RenderContext context) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
         checkCorrectnessFillingTemplate(wb);
 
         List<XSSFCell> cellList = new ArrayList<>();
         for (int i = 0; i < wb.getNumberOfSheets(); i++) {
             XSSFSheet sheet = wb.getSheetAt(i);
-            if (!sheet.getSheetName().equals(DATABASE_KEY) && !keysMap.containsKey(sheet.getSheetName())) {
+            if (!sheet.getSheetName().equals(DATABASE_KEY) && !isKeySheet(sheet.getSheetName())) {
                 cellList.addAll(getCellListWithKey(sheet, 0, sheet.getLastRowNum()));
             }
         }
 
+        List<ReportAnchor> anchors = new ArrayList<>();
+        DeferredFormulas formulas = new DeferredFormulas(wb, this::isKeySheet, this::isComplexKey);
+        BlockRules blockRules = new BlockRules(wb, this::isComplexKey);
+        RenderState state = new RenderState(formulas, blockRules);
         for (XSSFCell cell : cellList) {
-            fillCellByKey(cell, reportData, 0);
+            context.checkCancelled();
+            ReportAnchor anchor = appendable ? createAnchor(cell, 0) : null;
+            formulas.begin(cell);
+            List<?> list = getPartitionedList(cell, formulas);
+            int inserted = 0;
+            if (list != null) {
+                fillComplexKeyByPartitions(cell, list, context, state);
+                inserted = list.size();
+            } else if (anchor != null) {
+                inserted = fillComplexKey(cell, reportData, context, state, 0);
+            } else {
+                fillCellByKey(cell, reportData, 0, context, state);
+            }
+            formulas.end();
+            if (anchor != null) {
+                anchor.setInserted(inserted);
+                anchor.update(wb.getSheet(anchor.getSheetName()));
+                anchors.add(anchor);
+            }
         }
+        formulas.restore();
+        blockRules.apply();
 
+        if (appendable) {
+            ReportAnchor.save(wb, anchors);
+        }
         deleteKeySheets(wb);
+        if (compactOutput) {
+            new ReportCompactor().compact(wb);
+        }
+    }
 
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        wb.write(fileOutput);
-        wb.close();
-        fileOutput.close();
+    private void explainCell(XSSFCell cell, Object data, ReportPlan plan) throws IncorrectTemplateException {
+        String key = cell.getStringCellValue();
+        if (key.equals(COUNTER_KEY)) {
+            plan.addCounterCell();
+            return;
+        }
+        if (aggregateKeys.containsKey(key)) {
+            plan.addCell(DataType.NUMERIC);
+            return;
+        }
+        if (!keysMap.containsKey(key)) {
+            plan.addCell(DataType.TEXT);
+            return;
+        }
+        ReportKey reportKey = keysMap.get(key).getReportKey();
+        Object value = null;
+        try {
+            value = keysMap.get(key).getValue(data);
+        } catch (IllegalArgumentException e) {
+            throw new IncorrectTemplateException((reportKey.keyType() == KeyType.SINGLE)
+                    ? "Incorrect use of the single key. There is no access to the data object in this sheet."
+                    : "Incorrect use of the complex key. There is no access to the data object.");
+        } catch (IllegalAccessException ignored) {
+        }
+
+        if (reportKey.keyType() == KeyType.SINGLE) {
+            if (reportKey.temporary() && value == null) {
+                if (isAvailableToDeleteKey(cell)) plan.addTemporaryRow();
+            } else {
+                plan.addCell(reportKey.type());
+                if (reportKey.type() == DataType.IMAGE && value != null) {
+                    plan.addImage(new File(value.toString()).length());
+                }
+            }
+        } else {
+            XSSFSheet sourceSheet = cell.getSheet().getWorkbook().getSheet(key);
+            if (sourceSheet == null) {
+                return;
+            }
+            List<?> list = getElements(value);
+            boolean grouped = !reportKey.groupBy().isEmpty();
+            if (list == null && grouped && value instanceof Collection) list = new ArrayList<>((Collection<?>) value);
+            if (list == null && value != null) {
+                plan.addUnknownSize(key);
+            } else if (list != null && !list.isEmpty() && grouped) {
+                explainGroupedKey(sourceSheet, key, list, plan);
+            } else if (list != null && !list.isEmpty()) {
+                //Элементы справа друг от друга занимают одни строки: добавляются только строки блока ниже строки ключа
+                if (reportKey.direction() == Direction.RIGHT) {
+                    BlockPrototype block = createPrototype(sourceSheet);
+                    plan.addInsertedRows(key, block.size() - 1);
+                    plan.addInsertedColumns(key, (long) list.size() * block.getWidth() - 1);
+                } else {
+                    plan.addInsertedRows(key, (long) list.size() * (sourceSheet.getLastRowNum() + 1));
+                }
+                explainCells(getCellListWithKey(sourceSheet, 0, sourceSheet.getLastRowNum()), list, plan);
+            } else if (reportKey.temporary() && isAvailableToDeleteKey(cell)) {
+                plan.addTemporaryRow();
+            }
+        }
+    }
+
+    //Группы считаются так же, как при заполнении: новая группа начинается при смене значения группировки
+    //и добавляет строки заголовка и итогов, которые заполняются первым и последним элементом группы
+    private void explainGroupedKey(XSSFSheet sourceSheet, String key, List<?> list, ReportPlan plan) throws IncorrectTemplateException {
+        XSSFWorkbook wb = sourceSheet.getWorkbook();
+        XSSFSheet header = wb.getSheet(key + GROUP_HEADER);
+        XSSFSheet footer = wb.getSheet(key + GROUP_FOOTER);
+        List<XSSFCell> cellList = getCellListWithKey(sourceSheet, 0, sourceSheet.getLastRowNum());
+        List<XSSFCell> headerCells = (header == null) ? Collections.emptyList() : getCellListWithKey(header, 0, header.getLastRowNum());
+        List<XSSFCell> footerCells = (footer == null) ? Collections.emptyList() : getCellListWithKey(footer, 0, footer.getLastRowNum());
+        KeyData groupKey = keysMap.get(keysMap.get(key).getReportKey().groupBy());
+        Object group = null;
+        long groups = 0;
+        for (int i = 0; i < list.size(); i++) {
+            Object value;
+            try {
+                value = groupKey.getValue(list.get(i));
+            } catch (IllegalAccessException e) {
+                value = null;
+            }
+            if (i == 0 || !Objects.equals(value, group)) {
+                if (i > 0) explainCells(footerCells, Collections.singletonList(list.get(i - 1)), plan);
+                group = value;
+                groups++;
+                explainCells(headerCells, Collections.singletonList(list.get(i)), plan);
+            }
+        }
+        explainCells(footerCells, Collections.singletonList(list.get(list.size() - 1)), plan);
+        explainCells(cellList, list, plan);
+        long groupRows = ((header == null) ? 0 : header.getLastRowNum() + 1) + ((footer == null) ? 0 : footer.getLastRowNum() + 1);
+        plan.addInsertedRows(key, (long) list.size() * (sourceSheet.getLastRowNum() + 1) + groups * groupRows);
+    }
+
+    private void explainCells(List<XSSFCell> cellList, List<?> elements, ReportPlan plan) throws IncorrectTemplateException {
+        for (Object element : elements) {
+            for (XSSFCell xssfCell : cellList) {
+                explainCell(xssfCell, element, plan);
+            }
+        }
     }
 
     private void fillKeysMap(Class<?> c) throws ReportKeyException {
         classes.add(c);
+        ReportDescriptor descriptor = ReportDescriptor.find(c);
+        if (descriptor != null) {
+            for (KeyData keyData : descriptor.getKeys()) {
+                addKey(keyData);
+            }
+            return;
+        }
         for (Field field : c.getDeclaredFields()) {
             if (field.isAnnotationPresent(ReportKey.class)) {
                 ReportKey reportKey = field.getAnnotation(ReportKey.class);
-                String key = reportKey.name();
-                if (key.equals("default")) {
-                    String prefix = (reportKey.keyType() == KeyType.COMPLEX) ? COMPLEX_KEY : "key_";
-                    key = prefix + c.getSimpleName() + "_" + field.getName();
-                }
-                if (keysMap.containsKey(key)) {
-                    throw new IdenticalReportKeyException("Annotated fields have the identical names of ReportKey");
-                }
+                String key = getKeyName(c, field, reportKey);
                 String description = reportKey.description();
                 if (description.equals("default")) {
                     description = "object: " + c.getSimpleName() + ", " + "field: " + field.getName();
                 }
-                field.setAccessible(true);
-                KeyData keyData = new KeyData(key, description, reportKey, field);
-                keysMap.put(key, keyData);
 
+                Class<?> elementType = null;
                 if (reportKey.keyType() == KeyType.COMPLEX) {
-                    Class<?> n = field.getType();
-                    if (List.class.isAssignableFrom(n)) { //todo add Collections
-                        complexKeys.add(key);
-                        n = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-                        if (!classes.contains(n)) {
-                            fillKeysMap(n);
-                        }
+                    boolean grouped = !reportKey.groupBy().isEmpty();
+                    if (List.class.isAssignableFrom(field.getType()) || !grouped && field.getType() == ColumnarBatch.class
+                            || grouped && (Iterable.class.isAssignableFrom(field.getType())
+                            || Iterator.class.isAssignableFrom(field.getType()))) { //todo add Collections
+                        elementType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
                     } else {
                         throw new IncorrectReportKeyException("The annotation ReportKey does not match the field");
                     }
                 }
+                addKey(new KeyData(key, description, reportKey, field, elementType));
             }
         }
     }
 
+    static String getKeyName(Class<?> c, Field field, ReportKey reportKey) {
+        String key = reportKey.name();
+        if (key.equals("default")) {
+            String prefix = (reportKey.keyType() == KeyType.COMPLEX) ? COMPLEX_KEY : "key_";
+            key = prefix + c.getSimpleName() + "_" + field.getName();
+        }
+        return key;
+    }
+
+    private void addKey(KeyData keyData) throws ReportKeyException {
+        String key = keyData.getName();
+        if (keysMap.containsKey(key)) {
+            throw new IdenticalReportKeyException("Annotated fields have the identical names of ReportKey");
+        }
+        keysMap.put(key, keyData);
+        classKeys.computeIfAbsent(keyData.getOwnerType(), c -> new ArrayList<>()).add(keyData);
+        for (Aggregate aggregate : keyData.getReportKey().aggregates()) {
+            if (keyData.getReportKey().keyType() != KeyType.SINGLE) {
+                throw new IncorrectReportKeyException("Aggregates are available only for single keys");
+            }
+            aggregateKeys.put(Aggregates.getKeyName(aggregate, key), new AggregateKey(keyData, aggregate));
+        }
+
+        if (keyData.getReportKey().keyType() == KeyType.COMPLEX) {
+            complexKeys.add(key);
+            if (!classes.contains(keyData.getElementType())) {
+                fillKeysMap(keyData.getElementType());
+            }
+        }
+        String groupBy = keyData.getReportKey().groupBy();
+        if (!groupBy.isEmpty()) {
+            KeyData groupKey = keysMap.get(groupBy);
+            if (keyData.getReportKey().keyType() != KeyType.COMPLEX || groupKey == null
+                    || groupKey.getOwnerType() != keyData.getElementType() || groupKey.getReportKey().keyType() != KeyType.SINGLE) {
+                throw new IncorrectReportKeyException("The groupBy attribute must contain a single key of the list element");
+            }
+            groupSheets.add(key + GROUP_HEADER);
+            groupSheets.add(key + GROUP_FOOTER);
+        }
+        if (keyData.getReportKey().direction() != Direction.DOWN
+                && (keyData.getReportKey().keyType() != KeyType.COMPLEX || !groupBy.isEmpty())) {
+            throw new IncorrectReportKeyException("The direction attribute is available only for complex keys without groupBy");
+        }
+    }
+
     private void fillDataBaseSheet(XSSFSheet sheet) {
         XSSFRow headerRow = sheet.createRow(0);
         headerRow.createCell(0).setCellValue("Имя ключа");
@@ -161,7 +638,7 @@ public class Report {
     private void checkCorrectnessFillingTemplate(XSSFWorkbook wb) throws IncorrectTemplateException {
         for (int i = 0; i < wb.getNumberOfSheets(); i++) {
             XSSFSheet sheet = wb.getSheetAt(i);
-            if (keysMap.containsKey(sheet.getSheetName())) {
+            if (isKeySheet(sheet.getSheetName())) {
                 checkComplexKeyWithSheetName(sheet);
             } else if (!sheet.getSheetName().equals(DATABASE_KEY)) {
                 checkCounterKeyOutsideComplex(sheet);
@@ -216,10 +693,8 @@ public class Report {
                 for (int j = 0; j < row.getLastCellNum(); j++) {
                     XSSFCell cell = row.getCell(j);
                     if (cell != null) {
-                        if (cell.getCellType().equals(CellType.STRING)) {
-                            if (keysMap.containsKey(cell.getStringCellValue()) || cell.getStringCellValue().equals(COUNTER_KEY)) {
-                                ans.add(cell);
-                            }
+                        if (cell.getCellType().equals(CellType.STRING) && isKeyValue(cell.getStringCellValue())) {
+                            ans.add(cell);
                         }
                     }
                 }
@@ -228,17 +703,31 @@ public class Report {
         return ans;
     }
 
-    private void fillCellByKey(XSSFCell cell, Object reportData, int count) throws IOException, IncorrectTemplateException, ReportKeyException {
+    private boolean isKeyValue(String value) {
+        return keysMap.containsKey(value) || value.equals(COUNTER_KEY)
+                || aggregateKeys.containsKey(value) || getTextTemplate(value) != null;
+    }
+
+    private void fillCellByKey(XSSFCell cell, Object reportData, int count, RenderContext context, RenderState state) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
         String key = cell.getStringCellValue();
-        if (key.equals(COUNTER_KEY)) {
+        TextTemplate textTemplate = keysMap.containsKey(key) ? null : getTextTemplate(key);
+        if (textTemplate != null) {
+            fillTextTemplate(cell, textTemplate, reportData, count, state);
+        } else if (aggregateKeys.containsKey(key)) {
+            fillAggregate(cell, key, state);
+        } else if (key.equals(COUNTER_KEY)) {
             cell.setCellValue(count);
         } else {
             ReportKey reportKey = keysMap.get(key).getReportKey();
             KeyType keyType = reportKey.keyType();
+            if (keyType == KeyType.SINGLE && reportData instanceof ColumnarBatch.Row
+                    && setColumnValue(cell, reportKey, (ColumnarBatch<?>.Row) reportData)) {
+                return;
+            }
             if (keyType == KeyType.SINGLE) {
                 String data = null;
                 try {
-                    Object fieldData = keysMap.get(key).getField().get(reportData);
+                    Object fieldData = keysMap.get(key).getValue(reportData);
                     if (fieldData != null) data = fieldData.toString();
                 } catch (IllegalArgumentException e) {
                     throw new IncorrectTemplateException("Incorrect use of the single key. There is no access to the data object in this sheet.");
@@ -249,49 +738,212 @@ public class Report {
                 if (reportKey.temporary() && data == null) {
                     deleteTemporaryKey(cell);
                 } else {
-                    setCellValue(cell, reportKey, data);
+                    setCellValue(cell, key, reportKey, data, state);
                 }
             }
             if (keyType == KeyType.COMPLEX) {
-                fillComplexKey(cell, reportData);
+                fillComplexKey(cell, reportData, context, state, 0);
+            }
+        }
+    }
+
+    //Числа и даты из примитивных колонок пишутся в ячейку без перевода в строку
+    private boolean setColumnValue(XSSFCell cell, ReportKey reportKey, ColumnarBatch<?>.Row row) {
+        Object column = row.getColumn(cell.getStringCellValue());
+        if (reportKey.type() == DataType.NUMERIC) {
+            if (column instanceof double[]) {
+                cell.setCellValue(((double[]) column)[row.getIndex()]);
+                return true;
+            }
+            if (column instanceof long[]) {
+                cell.setCellValue(((long[]) column)[row.getIndex()]);
+                return true;
+            }
+        }
+        if ((reportKey.type() == DataType.DATE || reportKey.type() == DataType.TIME)
+                && column instanceof long[] && !isStringCellFormat(cell)) {
+            cell.setCellValue(new Date(((long[]) column)[row.getIndex()]));
+            return true;
+        }
+        return false;
+    }
+
+    //Итог берется из последнего раскрытого выше списка, внутри блока - из текущего списка на данный момент
+    private void fillAggregate(XSSFCell cell, String key, RenderState state) throws IOException, FormatReportKeyException {
+        AggregateKey aggregateKey = aggregateKeys.get(key);
+        KeyData keyData = aggregateKey.keyData;
+        Aggregates.Accumulator accumulator = state.getAccumulator(keyData.getName());
+        Double value = (accumulator == null) ? null : accumulator.get(aggregateKey.aggregate);
+        DataType dataType = keyData.getReportKey().type();
+        if (value == null) {
+            cell.setCellValue("");
+        } else if (aggregateKey.aggregate != Aggregate.COUNT && (dataType == DataType.DATE || dataType == DataType.TIME)) {
+            setCellValue(cell, key, keyData.getReportKey(), Long.toString(value.longValue()), state);
+        } else {
+            cell.setCellValue(value);
+        }
+    }
+
+    private Aggregates createAggregates(String key) {
+        List<KeyData> keys = new ArrayList<>();
+        for (KeyData keyData : classKeys.getOrDefault(keysMap.get(key).getElementType(), Collections.emptyList())) {
+            if (keyData.getReportKey().aggregates().length != 0) keys.add(keyData);
+        }
+        return new Aggregates(keys);
+    }
+
+    //Разбор текста выполняется один раз для каждой строки шаблона, при заполнении остается только склейка
+    private TextTemplate getTextTemplate(String text) {
+        if (!text.contains("${")) return null;
+        TextTemplate textTemplate = textTemplates.computeIfAbsent(text, value -> TextTemplate.compile(value,
+                key -> key.equals(COUNTER_KEY) || keysMap.containsKey(key) && keysMap.get(key).getReportKey().keyType() == KeyType.SINGLE,
+                this::createFormatter));
+        return textTemplate.isEmpty() ? null : textTemplate;
+    }
+
+    //DateTimeFormatter создается один раз на ключ шаблона и, в отличие от SimpleDateFormat, общий для потоков.
+    //Шаблоны, которые он не принимает (например, "aaa"), по-прежнему форматируются через SimpleDateFormat
+    private DateTimeFormatter createFormatter(String key) {
+        KeyData keyData = keysMap.get(key);
+        if (keyData == null) return null;
+        ReportKey reportKey = keyData.getReportKey();
+        String pattern;
+        if (reportKey.type() == DataType.DATE) {
+            pattern = reportKey.dateFormatPattern();
+        } else if (reportKey.type() == DataType.TIME) {
+            pattern = reportKey.timeFormatPattern();
+        } else {
+            return null;
+        }
+        try {
+            return DateTimeFormatter.ofPattern(pattern);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void fillTextTemplate(XSSFCell cell, TextTemplate textTemplate, Object reportData, int count, RenderState state) throws IncorrectTemplateException, FormatReportKeyException {
+        String[] values = new String[textTemplate.size()];
+        for (int i = 0; i < values.length; i++) {
+            String key = textTemplate.getKey(i);
+            values[i] = key.equals(COUNTER_KEY) ? String.valueOf(count) : formatValue(key, textTemplate.getFormatter(i), reportData);
+        }
+        String text = textTemplate.render(values);
+        if (isInlineText(cell.getStringCellValue(), TextStorage.DEFAULT, text, state)) {
+            setInlineString(cell, text);
+        } else {
+            cell.setCellValue(text);
+        }
+    }
+
+    private String formatValue(String key, DateTimeFormatter formatter, Object reportData) throws IncorrectTemplateException, FormatReportKeyException {
+        ReportKey reportKey = keysMap.get(key).getReportKey();
+        Object fieldData;
+        try {
+            fieldData = keysMap.get(key).getValue(reportData);
+        } catch (IllegalArgumentException e) {
+            throw new IncorrectTemplateException("Incorrect use of the single key. There is no access to the data object in this sheet.");
+        } catch (IllegalAccessException e) {
+            fieldData = null;
+        }
+        if (fieldData == null || reportKey.type() == DataType.IMAGE) {
+            return "";
+        }
+        try {
+            if (formatter != null) {
+                long time = Long.parseLong(fieldData.toString());
+                //До перехода на григорианский календарь SimpleDateFormat считает даты по юлианскому
+                if (time >= GREGORIAN_CHANGE) {
+                    return formatter.format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()));
+                }
+            }
+            switch (reportKey.type()) {
+                case DATE:
+                    return new SimpleDateFormat(reportKey.dateFormatPattern()).format(new Date(Long.parseLong(fieldData.toString())));
+                case TIME:
+                    return new SimpleDateFormat(reportKey.timeFormatPattern()).format(new Date(Long.parseLong(fieldData.toString())));
+                default:
+                    return fieldData.toString();
             }
+        } catch (NumberFormatException e) {
+            throw new FormatReportKeyException("Field datatype does not match the ReportKey datatype.");
         }
     }
 
-    private void fillComplexKey(XSSFCell cell, Object reportData) throws IOException, IncorrectTemplateException, ReportKeyException {
+    private ReportAnchor createAnchor(XSSFCell cell, int counterOffset) {
+        if (cell.getCellType() != CellType.STRING) return null;
+        String key = cell.getStringCellValue();
+        KeyData keyData = keysMap.get(key);
+        if (keyData == null || !isRowListKey(keyData) || cell.getSheet().getWorkbook().getSheet(key) == null) {
+            return null;
+        }
+        //Количество и судьба строки ключа уточняются после заполнения через setInserted
+        boolean keyRow = !keyData.getReportKey().temporary() || !isAvailableToDeleteKey(cell);
+        ReportAnchor anchor = new ReportAnchor(cell.getSheet().getSheetName(), key,
+                cell.getColumnIndex(), cell.getRowIndex(), counterOffset, keyRow);
+        anchor.mark(cell.getSheet());
+        return anchor;
+    }
+
+    //Строка ключа вставляется на место, где закончилось предыдущее раскрытие списка
+    private XSSFCell createAnchorCell(XSSFSheet sheet, ReportAnchor anchor) {
+        XSSFRow row = anchor.isKeyRow() ? sheet.getRow(anchor.getRow()) : null;
+        if (row == null) {
+            if (!anchor.isKeyRow() && anchor.getRow() <= sheet.getLastRowNum()) {
+                sheet.shiftRows(anchor.getRow(), sheet.getLastRowNum(), 1);
+            }
+            row = sheet.createRow(anchor.getRow());
+        }
+        XSSFCell cell = row.getCell(anchor.getColumn());
+        if (cell == null) cell = row.createCell(anchor.getColumn());
+        cell.setCellValue(anchor.getKey());
+        return cell;
+    }
+
+    //Возвращает число вставленных элементов списка
+    private int fillComplexKey(XSSFCell cell, Object reportData, RenderContext context, RenderState state, int counterOffset) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
         String key = cell.getStringCellValue();
         XSSFWorkbook wb = cell.getSheet().getWorkbook();
         XSSFSheet sourceSheet = wb.getSheet(key);
-        XSSFSheet destinationSheet = cell.getSheet();
+        if (sourceSheet != null && !keysMap.get(key).getReportKey().groupBy().isEmpty()) {
+            return fillGroupedKey(cell, reportData, context, state);
+        }
+        if (sourceSheet != null && keysMap.get(key).getReportKey().direction() == Direction.RIGHT) {
+            return fillHorizontalKey(cell, reportData, context, state);
+        }
 
 //        int rowIndex = cell.getRowIndex();
 //        if (rowIndex == 0) destinationSheet.shiftRows(rowIndex, destinationSheet.getLastRowNum(), 1);
 
         if (sourceSheet != null) {
-            List<?> list = null;
-            if (keysMap.get(key).getField().getType() == List.class) {
-                try {
-                    list = (List<?>) keysMap.get(key).getField().get(reportData);
-                } catch (IllegalArgumentException e) {
-                    throw new IncorrectTemplateException("Incorrect use of the complex key. There is no access to the data object.");
-                } catch (IllegalAccessException e) {
-                    cell.setCellValue("");
-                }
+            Object fieldData = null;
+            try {
+                fieldData = keysMap.get(key).getValue(reportData);
+            } catch (IllegalArgumentException e) {
+                throw new IncorrectTemplateException("Incorrect use of the complex key. There is no access to the data object.");
+            } catch (IllegalAccessException e) {
+                cell.setCellValue("");
             }
+            //Потоковые данные отдают элементы по одному, размер списка заранее неизвестен
+            List<?> list = getElements(fieldData);
+            Iterator<?> iterator = (list != null) ? list.iterator() : (fieldData instanceof Iterator) ? (Iterator<?>) fieldData : null;
+            int total = (list != null) ? list.size() : -1;
 
-            if (list != null && !list.isEmpty()) {
-                List<XSSFRow> rowList = getRowList(sourceSheet);
-                for (int i = 0; i < list.size(); i++) {
-                    destinationSheet.shiftRows(cell.getRowIndex(), destinationSheet.getLastRowNum(), rowList.size());
-                    destinationSheet.copyRows(rowList, cell.getRowIndex() - rowList.size(), new CellCopyPolicy());
-                    List<XSSFCell> cellList = getCellListWithKey(destinationSheet,
-                            cell.getRowIndex() - rowList.size(),
-                            cell.getRowIndex() - 1);
-                    for (XSSFCell xssfCell : cellList) {
-                        fillCellByKey(xssfCell, list.get(i), i + 1);
-                    }
+            Aggregates aggregates = createAggregates(key);
+            state.putAggregates(aggregates);
+            if (iterator != null && iterator.hasNext()) {
+                BlockPrototype block = createPrototype(sourceSheet);
+                int shardStart = (reportData == this.reportData && counterOffset == 0) ? cell.getRowIndex() : -1;
+                int count = 0;
+                while (iterator.hasNext()) {
+                    context.checkCancelled();
+                    Object element = iterator.next();
+                    aggregates.add(element);
+                    insertBlock(cell, block, element, counterOffset + ++count, shardStart, context, state);
+                    context.reportProgress(key, count, total);
                 }
                 deleteRow(cell.getRow());
+                return count;
             } else {
                 if (keysMap.get(key).getReportKey().temporary()) {
                     deleteTemporaryKey(cell);
@@ -300,10 +952,466 @@ public class Report {
                 }
             }
         }
+        return 0;
+    }
+
+    //Строки блока вставляются перед строкой ключа и заполняются данными элемента.
+    //Для списков верхнего уровня shardStart - строка ключа, с которой заполненные строки можно переносить на новый лист
+    private void insertBlock(XSSFCell cell, BlockPrototype block, Object data, int count, int shardStart, RenderContext context, RenderState state) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        if (block.size() == 0) return;
+        XSSFSheet destinationSheet = cell.getSheet();
+        DeferredFormulas formulas = state.getFormulas();
+        BlockRules blockRules = state.getBlockRules();
+        if (shardStart >= 0 && cell.getRowIndex() > shardStart
+                && destinationSheet.getLastRowNum() + 1 + block.size() > maxRowsPerSheet) {
+            //Ссылки на перенесенные строки дальше пересчитывает POI
+            if (formulas != null) formulas.restore();
+            XSSFSheet shard = moveToShard(destinationSheet, shardStart, cell.getRowIndex());
+            if (blockRules != null) blockRules.move(destinationSheet, shard, shardStart);
+        }
+        destinationSheet.shiftRows(cell.getRowIndex(), destinationSheet.getLastRowNum(), block.size());
+        int startRow = cell.getRowIndex() - block.size();
+        List<XSSFCell> cellList = block.stamp(destinationSheet, startRow);
+        if (formulas != null) formulas.copyBlock(block.getRowList(), destinationSheet, startRow);
+        for (XSSFCell xssfCell : cellList) {
+            fillCellByKey(xssfCell, data, count, context, state);
+        }
+        if (formulas != null && shardStart >= 0) formulas.detach(destinationSheet, startRow, cell.getRowIndex() - 1);
+        if (blockRules != null) blockRules.add(block.getRowList().get(0).getSheet(), destinationSheet, startRow, cell.getRowIndex() - startRow);
+    }
+
+    //Отсортированные элементы читаются одним проходом: при смене значения ключа группировки вставляются
+    //подвал предыдущей группы и заголовок следующей, поэтому вложенные списки групп не нужны.
+    //Счетчик в заголовке и подвале - номер группы, итоги в подвале - по группе, после списка - по всему списку
+    private int fillGroupedKey(XSSFCell cell, Object reportData, RenderContext context, RenderState state) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        String key = cell.getStringCellValue();
+        KeyData keyData = keysMap.get(key);
+        XSSFWorkbook wb = cell.getSheet().getWorkbook();
+        Object fieldData;
+        try {
+            fieldData = keyData.getValue(reportData);
+        } catch (IllegalArgumentException e) {
+            throw new IncorrectTemplateException("Incorrect use of the complex key. There is no access to the data object.");
+        } catch (IllegalAccessException e) {
+            fieldData = null;
+        }
+        Iterator<?> iterator = getIterator(fieldData);
+        int total = (fieldData instanceof Collection) ? ((Collection<?>) fieldData).size() : -1;
+
+        BlockPrototype block = createPrototype(wb.getSheet(key));
+        BlockPrototype header = createPrototype(wb.getSheet(key + GROUP_HEADER));
+        BlockPrototype footer = createPrototype(wb.getSheet(key + GROUP_FOOTER));
+        KeyData groupKey = keysMap.get(keyData.getReportKey().groupBy());
+        int shardStart = (reportData == this.reportData) ? cell.getRowIndex() : -1;
+        Aggregates aggregates = createAggregates(key);
+        Aggregates groupAggregates = null;
+        Object group = null;
+        Object last = null;
+        int count = 0;
+        int groups = 0;
+        while (iterator.hasNext()) {
+            context.checkCancelled();
+            Object element = iterator.next();
+            Object value;
+            try {
+                value = groupKey.getValue(element);
+            } catch (IllegalAccessException e) {
+                value = null;
+            }
+            if (count == 0 || !Objects.equals(value, group)) {
+                if (count > 0) insertBlock(cell, footer, last, groups, shardStart, context, state);
+                groupAggregates = createAggregates(key);
+                state.putAggregates(groupAggregates);
+                group = value;
+                insertBlock(cell, header, element, ++groups, shardStart, context, state);
+            }
+            aggregates.add(element);
+            groupAggregates.add(element);
+            insertBlock(cell, block, element, ++count, shardStart, context, state);
+            last = element;
+            context.reportProgress(key, count, total);
+        }
+        if (count > 0) {
+            insertBlock(cell, footer, last, groups, shardStart, context, state);
+        }
+        state.putAggregates(aggregates);
+
+        if (count > 0) {
+            deleteRow(cell.getRow());
+        } else if (keyData.getReportKey().temporary()) {
+            deleteTemporaryKey(cell);
+        } else {
+            cell.setCellValue("");
+        }
+        return count;
+    }
+
+    //Элементы ставятся вправо полосами шириной в лист блока. Колонки и строки под все элементы
+    //резервируются одним сдвигом, дальше каждый элемент только ставится в свою полосу
+    private int fillHorizontalKey(XSSFCell cell, Object reportData, RenderContext context, RenderState state) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        String key = cell.getStringCellValue();
+        XSSFSheet sheet = cell.getSheet();
+        XSSFSheet sourceSheet = sheet.getWorkbook().getSheet(key);
+        KeyData keyData = keysMap.get(key);
+        List<?> list = null;
+        try {
+            Object fieldData = keyData.getValue(reportData);
+            list = getElements(fieldData);
+            //Ширина раскрытия нужна заранее, поэтому поток элементов читается в список
+            if (fieldData instanceof Iterator) {
+                List<Object> elements = new ArrayList<>();
+                ((Iterator<?>) fieldData).forEachRemaining(elements::add);
+                list = elements;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IncorrectTemplateException("Incorrect use of the complex key. There is no access to the data object.");
+        } catch (IllegalAccessException e) {
+            list = null;
+        }
+
+        Aggregates aggregates = createAggregates(key);
+        state.putAggregates(aggregates);
+        if (list == null || list.isEmpty()) {
+            if (keyData.getReportKey().temporary()) {
+                deleteTemporaryKey(cell);
+            } else {
+                cell.setCellValue("");
+            }
+            return 0;
+        }
+
+        //Сдвиг колонок и строк сам пересчитывает ссылки формул, поэтому отложенные формулы возвращаются в книгу
+        if (state.getFormulas() != null) state.getFormulas().restore();
+        BlockPrototype block = createPrototype(sourceSheet);
+        int width = block.getWidth();
+        int row = cell.getRowIndex();
+        int column = cell.getColumnIndex();
+        cell.setBlank();
+        reserveColumns(sheet, column + 1, list.size() * width - 1);
+        if (block.size() > 1 && row < sheet.getLastRowNum()) {
+            sheet.shiftRows(row + 1, sheet.getLastRowNum(), block.size() - 1);
+        }
+        for (int j = 0; j < width; j++) {
+            if (sourceSheet.getColumnHelper().getColumn(j, false) == null) continue;
+            for (int i = 0; i < list.size(); i++) {
+                sheet.setColumnWidth(column + i * width + j, sourceSheet.getColumnWidth(j));
+            }
+        }
+
+        BlockRules blockRules = state.getBlockRules();
+        for (int i = 0; i < list.size(); i++) {
+            context.checkCancelled();
+            aggregates.add(list.get(i));
+            int startColumn = column + i * width;
+            for (XSSFCell xssfCell : block.stamp(sheet, row, startColumn)) {
+                fillCellByKey(xssfCell, list.get(i), i + 1, context, state);
+            }
+            if (blockRules != null) blockRules.add(sourceSheet, sheet, row, startColumn, block.size());
+            context.reportProgress(key, i + 1, list.size());
+        }
+        return list.size();
+    }
+
+    //Колонки правее ключа сдвигаются вместе с шириной: shiftColumns ширину не переносит
+    private void reserveColumns(XSSFSheet sheet, int startColumn, int count) {
+        int lastColumn = -1;
+        for (Row row : sheet) {
+            lastColumn = Math.max(lastColumn, row.getLastCellNum() - 1);
+        }
+        if (count <= 0 || lastColumn < startColumn) return;
+        int[] widths = new int[lastColumn - startColumn + 1];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = sheet.getColumnWidth(startColumn + i);
+        }
+        sheet.shiftColumns(startColumn, lastColumn, count);
+        for (int i = 0; i < widths.length; i++) {
+            sheet.setColumnWidth(startColumn + count + i, widths[i]);
+        }
+    }
+
+    //Элементы колоночного пакета отдаются одним курсором, переставляемым по строкам
+    private List<?> getElements(Object fieldData) {
+        if (fieldData instanceof List) return (List<?>) fieldData;
+        if (fieldData instanceof ColumnarBatch) return ((ColumnarBatch<?>) fieldData).rows();
+        return null;
+    }
+
+    //Тип, ключи которого описывают объект данных: строки колоночных пакетов и привязанные узлы несут его сами
+    static Class<?> getDataType(Object data) {
+        if (data instanceof ColumnarBatch.Row) return ((ColumnarBatch<?>.Row) data).getType();
+        if (data instanceof BoundNode) return ((BoundNode) data).getType();
+        return data.getClass();
+    }
+
+    private Iterator<?> getIterator(Object fieldData) {
+        if (fieldData instanceof Iterator) return (Iterator<?>) fieldData;
+        if (fieldData instanceof Iterable) return ((Iterable<?>) fieldData).iterator();
+        return Collections.emptyIterator();
+    }
+
+    //Лист блока разбирается один раз на раскрытие списка, у групп заголовка и итогов листа может не быть
+    private BlockPrototype createPrototype(XSSFSheet sheet) {
+        return new BlockPrototype((sheet == null) ? Collections.emptyList() : getRowList(sheet), this::isKeyValue);
+    }
+
+    //Строки [startRow, endRow) уходят на новый лист перед исходным, строки заголовка повторяются,
+    //поэтому номера строк и привязки изображений на новом листе не меняются
+    private XSSFSheet moveToShard(XSSFSheet sheet, int startRow, int endRow) {
+        XSSFWorkbook wb = sheet.getWorkbook();
+        XSSFSheet shard = wb.createSheet(getShardName(sheet));
+        wb.setSheetOrder(shard.getSheetName(), wb.getSheetIndex(sheet));
+
+        int lastColumn = 0;
+        List<XSSFRow> rows = new ArrayList<>();
+        for (int i = 0; i < endRow; i++) {
+            XSSFRow row = (sheet.getRow(i) == null) ? sheet.createRow(i) : sheet.getRow(i);
+            lastColumn = Math.max(lastColumn, row.getLastCellNum());
+            rows.add(row);
+        }
+        for (int i = 0; i < lastColumn; i++) {
+            shard.setColumnWidth(i, sheet.getColumnWidth(i));
+        }
+        shard.setDefaultRowHeight(sheet.getDefaultRowHeight());
+        shard.copyRows(rows, 0, new CellCopyPolicy());
+        for (XSSFRow row : rows) {
+            for (Cell rowCell : row) {
+                if (isInlineString(rowCell)) {
+                    setInlineString(shard.getRow(row.getRowNum()).getCell(rowCell.getColumnIndex()), rowCell.getStringCellValue());
+                }
+            }
+        }
+        moveImages(sheet, shard, startRow, endRow);
+
+        for (int i = sheet.getNumMergedRegions() - 1; i >= 0; i--) {
+            CellRangeAddress mergedRegion = sheet.getMergedRegion(i);
+            if (mergedRegion.getFirstRow() >= startRow && mergedRegion.getLastRow() < endRow) {
+                sheet.removeMergedRegion(i);
+            }
+        }
+        sheet.shiftRows(endRow, sheet.getLastRowNum(), startRow - endRow);
+        return shard;
+    }
+
+    private String getShardName(XSSFSheet sheet) {
+        XSSFWorkbook wb = sheet.getWorkbook();
+        for (int i = 1; ; i++) {
+            String suffix = " (" + i + ")";
+            String name = sheet.getSheetName();
+            if (name.length() + suffix.length() > 31) name = name.substring(0, 31 - suffix.length());
+            if (wb.getSheet(name + suffix) == null) return name + suffix;
+        }
+    }
+
+    private void moveImages(XSSFSheet sheet, XSSFSheet shard, int startRow, int endRow) {
+        XSSFDrawing drawing = sheet.getDrawingPatriarch();
+        if (drawing == null) return;
+        for (XSSFShape shape : drawing.getShapes()) {
+            if (!(shape instanceof XSSFPicture)) continue;
+            XSSFPicture picture = (XSSFPicture) shape;
+            XSSFClientAnchor anchor = picture.getClientAnchor();
+            if (anchor.getRow1() >= startRow && anchor.getRow1() < endRow) {
+                int pictureIndex = getPictureIndex(sheet.getWorkbook(), picture.getPictureData());
+                shard.createDrawingPatriarch().createPicture(new XSSFClientAnchor(anchor.getDx1(), anchor.getDy1(),
+                        anchor.getDx2(), anchor.getDy2(), anchor.getCol1(), anchor.getRow1(),
+                        anchor.getCol2(), anchor.getRow2()), pictureIndex);
+                XmlCursor cursor = picture.getCTPicture().newCursor();
+                cursor.toParent();
+                XmlObject ctAnchor = cursor.getObject();
+                cursor.dispose();
+                List<CTTwoCellAnchor> anchors = drawing.getCTDrawing().getTwoCellAnchorList();
+                for (int j = 0; j < anchors.size(); j++) {
+                    if (anchors.get(j) == ctAnchor) {
+                        drawing.getCTDrawing().removeTwoCellAnchor(j);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private int getPictureIndex(XSSFWorkbook wb, XSSFPictureData pictureData) {
+        List<XSSFPictureData> pictures = wb.getAllPictures();
+        for (int i = 0; i < pictures.size(); i++) {
+            if (pictures.get(i).getPackagePart().getPartName().equals(pictureData.getPackagePart().getPartName())) {
+                return i;
+            }
+        }
+        return wb.addPicture(pictureData.getData(), pictureData.getPictureType());
+    }
+
+    private List<?> getPartitionedList(XSSFCell cell, DeferredFormulas formulas) {
+        if (parallelism < 2 || !PartitionWorkbook.isSupported() || !cell.getCellType().equals(CellType.STRING)) return null;
+        KeyData keyData = keysMap.get(cell.getStringCellValue());
+        if (keyData == null || !isRowListKey(keyData)) return null;
+        XSSFWorkbook wb = cell.getSheet().getWorkbook();
+        XSSFSheet sourceSheet = wb.getSheet(keyData.getName());
+        if (sourceSheet == null || !isPartitionable(sourceSheet, keyData.getElementType(), new HashSet<>(), formulas)) return null;
+
+        Object fieldData;
+        try {
+            fieldData = keyData.getValue(reportData);
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            return null;
+        }
+        if (!(fieldData instanceof List) || ((List<?>) fieldData).size() < 2 * MIN_PARTITION_SIZE) return null;
+        List<?> list = (List<?>) fieldData;
+        long rows = (long) list.size() * (sourceSheet.getLastRowNum() + 1);
+        if (cell.getSheet().getLastRowNum() + 1 + rows > maxRowsPerSheet) return null;
+        return list;
+    }
+
+    //Формулы, ссылки и изображения привязаны к позиции на листе, такие блоки заполняются последовательно
+    private boolean isPartitionable(XSSFSheet sheet, Class<?> type, Set<Class<?>> visited, DeferredFormulas formulas) {
+        if (!sheet.getHyperlinkList().isEmpty() || formulas.hasFormulas(sheet.getSheetName()) || BlockRules.hasRules(sheet)) return false;
+        for (Row row : sheet) {
+            for (Cell cell : row) {
+                if (cell.getCellType().equals(CellType.FORMULA)) return false;
+                //Нарастающий итог в блоке зависит от всех предыдущих элементов
+                if (cell.getCellType().equals(CellType.STRING) && aggregateKeys.containsKey(cell.getStringCellValue())) return false;
+            }
+        }
+        if (!visited.add(type) || !classKeys.containsKey(type)) return true;
+        for (KeyData keyData : classKeys.get(type)) {
+            ReportKey reportKey = keyData.getReportKey();
+            if (reportKey.type() == DataType.IMAGE) return false;
+            if (reportKey.keyType() == KeyType.COMPLEX) {
+                if (reportKey.direction() != Direction.DOWN) return false;
+                XSSFSheet nestedSheet = sheet.getWorkbook().getSheet(keyData.getName());
+                if (nestedSheet != null && !isPartitionable(nestedSheet, keyData.getElementType(), visited, formulas)) return false;
+            }
+        }
+        return true;
+    }
+
+    private void fillComplexKeyByPartitions(XSSFCell cell, List<?> list, RenderContext context, RenderState state) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        String key = cell.getStringCellValue();
+        XSSFSheet destinationSheet = cell.getSheet();
+        XSSFWorkbook wb = destinationSheet.getWorkbook();
+        int partitions = Math.min(parallelism, list.size() / MIN_PARTITION_SIZE);
+        Set<String> blockSheets = new LinkedHashSet<>();
+        collectBlockSheets(wb, keysMap.get(key), blockSheets);
+        ExecutorService executor = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "report-partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<PartitionWorkbook> workbooks = new ArrayList<>();
+        try {
+            List<Future<PartitionWorkbook>> futures = new ArrayList<>();
+            List<Aggregates> partitionAggregates = new ArrayList<>();
+            List<RenderState> partitionStates = new ArrayList<>();
+            int[] bounds = new int[partitions + 1];
+            for (int p = 1; p <= partitions; p++) {
+                bounds[p] = (int) ((long) list.size() * p / partitions);
+                int from = bounds[p - 1];
+                int to = bounds[p];
+                Aggregates aggregates = createAggregates(key);
+                partitionAggregates.add(aggregates);
+                RenderState partitionState = state.createPartition();
+                partitionStates.add(partitionState);
+                PartitionWorkbook partition = new PartitionWorkbook(wb, blockSheets);
+                workbooks.add(partition);
+                futures.add(executor.submit(() -> fillPartition(partition, key, list, from, to, aggregates, context, partitionState)));
+            }
+            for (Future<PartitionWorkbook> future : futures) {
+                getPartition(future);
+            }
+
+            //Общие строки переносятся в основном потоке, номера строк и ячеек проставляются в потоках диапазонов
+            int rowIndex = cell.getRowIndex();
+            int startRow = rowIndex;
+            List<Future<List<CTRow>>> rowFutures = new ArrayList<>();
+            for (PartitionWorkbook partition : workbooks) {
+                int[] strings = partition.mapStrings(wb.getSharedStringSource());
+                int partitionStart = startRow;
+                rowFutures.add(executor.submit(() -> partition.createRows(partitionStart, strings)));
+                startRow += partition.getRowCount();
+            }
+            List<CTRow> partitionRows = new ArrayList<>();
+            for (Future<List<CTRow>> future : rowFutures) {
+                partitionRows.addAll(getPartition(future));
+            }
+            //Строка ключа удаляется и место освобождается, пока на листе нет строк списка: shiftRows пересобирает все строки листа
+            deleteRow(cell.getRow());
+            if (rowIndex <= destinationSheet.getLastRowNum()) {
+                destinationSheet.shiftRows(rowIndex, destinationSheet.getLastRowNum(), startRow - rowIndex);
+            }
+            try {
+                PartitionWorkbook.attachRows(destinationSheet, partitionRows);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+            for (int p = 0; p < partitions; p++) {
+                PartitionWorkbook partition = workbooks.get(p);
+                for (CellRangeAddress mergedRegion : partition.getMergedRegions(rowIndex)) {
+                    destinationSheet.addMergedRegionUnsafe(mergedRegion);
+                }
+                rowIndex += partition.getRowCount();
+                context.reportProgress(key, bounds[p + 1], list.size());
+            }
+
+            //Итоги вложенных списков - как при последовательном заполнении: последние раскрытые
+            partitionStates.forEach(state::putAggregates);
+            Aggregates aggregates = createAggregates(key);
+            partitionAggregates.forEach(aggregates::merge);
+            state.putAggregates(aggregates);
+        } finally {
+            executor.shutdownNow();
+            for (PartitionWorkbook partition : workbooks) {
+                partition.close();
+            }
+        }
+    }
 
+    //Листы блока, его групп и вложенных списков, которые нужны для заполнения диапазона
+    private void collectBlockSheets(XSSFWorkbook wb, KeyData keyData, Set<String> names) {
+        for (String name : Arrays.asList(keyData.getName(), keyData.getName() + GROUP_HEADER, keyData.getName() + GROUP_FOOTER)) {
+            if (wb.getSheet(name) != null) names.add(name);
+        }
+        if (!classKeys.containsKey(keyData.getElementType())) return;
+        for (KeyData nested : classKeys.get(keyData.getElementType())) {
+            if (nested.getReportKey().keyType() == KeyType.COMPLEX && wb.getSheet(nested.getName()) != null
+                    && !names.contains(nested.getName())) {
+                collectBlockSheets(wb, nested, names);
+            }
+        }
     }
 
-    private void setCellValue(XSSFCell cell, ReportKey reportKey, String data) throws IOException, FormatReportKeyException {
+    //Каждый диапазон заполняется в своей книге: XSSFWorkbook нельзя использовать из нескольких потоков
+    private PartitionWorkbook fillPartition(PartitionWorkbook partition, String key, List<?> list, int from, int to, Aggregates aggregates, RenderContext context, RenderState state) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        BlockPrototype block = createPrototype(partition.getWorkbook().getSheet(key));
+        XSSFSheet fragment = partition.getFragment();
+        int rowIndex = 0;
+        for (int i = from; i < to; i++) {
+            context.checkCancelled();
+            aggregates.add(list.get(i));
+            for (XSSFCell xssfCell : block.stamp(fragment, rowIndex)) {
+                fillCellByKey(xssfCell, list.get(i), i + 1, context, state);
+            }
+            rowIndex = fragment.getLastRowNum() + 1;
+        }
+        partition.collectStrings();
+        return partition;
+    }
+
+    private <T> T getPartition(Future<T> future) throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportCancelledException("The report rendering was cancelled.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof IncorrectTemplateException) throw (IncorrectTemplateException) cause;
+            if (cause instanceof ReportKeyException) throw (ReportKeyException) cause;
+            if (cause instanceof ReportCancelledException) throw (ReportCancelledException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void setCellValue(XSSFCell cell, String key, ReportKey reportKey, String data, RenderState state) throws IOException, FormatReportKeyException {
         try {
             if (data == null) {
                 cell.setCellValue("");
@@ -330,7 +1438,11 @@ public class Report {
                         cell.setCellValue(Double.parseDouble(data));
                         break;
                     case TEXT:
-                        cell.setCellValue(data);
+                        if (isInlineText(key, reportKey.textStorage(), data, state)) {
+                            setInlineString(cell, data);
+                        } else {
+                            cell.setCellValue(data);
+                        }
                         break;
                     case IMAGE:
                         cell.setCellValue("");
@@ -343,6 +1455,31 @@ public class Report {
         }
     }
 
+    private boolean isInlineText(String key, TextStorage keyStorage, String data, RenderState state) {
+        TextStorage storage = (keyStorage == TextStorage.DEFAULT) ? textStorage : keyStorage;
+        switch (storage) {
+            case INLINE:
+                return true;
+            case AUTO:
+                return state.getTextCardinality().isHigh(key, data);
+            default:
+                return false;
+        }
+    }
+
+    //Строка записывается в саму ячейку и не попадает в таблицу общих строк
+    private void setInlineString(XSSFCell cell, String data) {
+        CTCell ctCell = cell.getCTCell();
+        if (ctCell.isSetV()) ctCell.unsetV();
+        if (ctCell.isSetF()) ctCell.unsetF();
+        ctCell.setT(STCellType.INLINE_STR);
+        (ctCell.isSetIs() ? ctCell.getIs() : ctCell.addNewIs()).setT(data);
+    }
+
+    private boolean isInlineString(Cell cell) {
+        return ((XSSFCell) cell).getCTCell().getT() == STCellType.INLINE_STR;
+    }
+
     private List<XSSFRow> getRowList(XSSFSheet sheet) {
         List<XSSFRow> ans = new ArrayList<>();
         for (int i = 0; i <= sheet.getLastRowNum(); i++) {
@@ -356,11 +1493,27 @@ public class Report {
         return ans;
     }
 
+    //Список без группировки, раскрываемый вниз: такие списки можно дописывать и делить на диапазоны
+    private boolean isRowListKey(KeyData keyData) {
+        ReportKey reportKey = keyData.getReportKey();
+        return reportKey.keyType() == KeyType.COMPLEX && reportKey.groupBy().isEmpty() && reportKey.direction() == Direction.DOWN;
+    }
+
+    private boolean isComplexKey(String key) {
+        return keysMap.containsKey(key) && keysMap.get(key).getReportKey().keyType() == KeyType.COMPLEX;
+    }
+
+    private boolean isKeySheet(String sheetName) {
+        return keysMap.containsKey(sheetName) || groupSheets.contains(sheetName);
+    }
+
     private void deleteKeySheets(XSSFWorkbook wb) {
         for (int i = wb.getNumberOfSheets() - 1; i >= 0; i--) {
             String sheetName = wb.getSheetAt(i).getSheetName();
-            if (sheetName.equals(DATABASE_KEY) || keysMap.containsKey(sheetName)) {
+            if (sheetName.equals(DATABASE_KEY) || !appendable && isKeySheet(sheetName)) {
                 wb.removeSheetAt(i);
+            } else if (isKeySheet(sheetName)) {
+                wb.setSheetVisibility(i, SheetVisibility.VERY_HIDDEN);
             }
         }
     }
@@ -489,6 +1642,13 @@ public class Report {
         return dataFormat.equals("@") || dataFormat.equals("General");
     }
 
-}
-
+    private static class AggregateKey {
+        private final KeyData keyData;
+        private final Aggregate aggregate;
 
+        private AggregateKey(KeyData keyData, Aggregate aggregate) {
+            this.keyData = keyData;
+            this.aggregate = aggregate;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package model;
+
+import exception.IncorrectTemplateException;
+import org.apache.poi.ooxml.POIXMLProperties;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.officeDocument.x2006.customProperties.CTProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Место в готовом отчете, куда дописываются новые элементы списка сложного ключа верхнего уровня.
+//Хранится в пользовательских свойствах книги, чтобы пережить сохранение отчета
+class ReportAnchor {
+
+    private static final String PROPERTY = "reporthelper.anchor.";
+
+    private final String sheetName;
+    private final String key;
+    private final int column;
+    private int row;
+    private int count;
+    private boolean keyRow;
+    private XSSFRow nextRow;
+    private int nextRowIndex;
+
+    ReportAnchor(String sheetName, String key, int column, int row, int count, boolean keyRow) {
+        this.sheetName = sheetName;
+        this.key = key;
+        this.column = column;
+        this.row = row;
+        this.count = count;
+        this.keyRow = keyRow;
+    }
+
+    String getSheetName() {
+        return sheetName;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    int getColumn() {
+        return column;
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    //Строка ключа осталась в отчете пустой и при дописывании используется повторно
+    boolean isKeyRow() {
+        return keyRow;
+    }
+
+    //Число элементов известно только после раскрытия списка: потоковые данные заранее не пересчитываются.
+    //Строка ключа остается, только если список оказался пустым
+    void setInserted(int inserted) {
+        count += inserted;
+        keyRow = keyRow && inserted == 0;
+    }
+
+    void shift(int rows) {
+        row += rows;
+    }
+
+    //Запоминается первая строка после ключа: по ее положению после раскрытия находится место вставки
+    void mark(XSSFSheet sheet) {
+        for (int i = row + 1; i <= sheet.getLastRowNum(); i++) {
+            if (sheet.getRow(i) != null) {
+                nextRow = sheet.getRow(i);
+                nextRowIndex = i;
+                return;
+            }
+        }
+    }
+
+    //Строка ключа к этому моменту удалена, поэтому место вставки - сразу после заполненных строк.
+    //Возвращает смещение строк, стоявших после ключа
+    int update(XSSFSheet sheet) {
+        int shift = (nextRow == null) ? 0 : nextRow.getRowNum() - nextRowIndex;
+        if (!keyRow) {
+            row = (nextRow == null) ? sheet.getLastRowNum() + 1 : nextRow.getRowNum() - (nextRowIndex - row - 1);
+        }
+        nextRow = null;
+        return shift;
+    }
+
+    static List<ReportAnchor> read(XSSFWorkbook wb) throws IncorrectTemplateException {
+        POIXMLProperties.CustomProperties properties = wb.getProperties().getCustomProperties();
+        List<ReportAnchor> anchors = new ArrayList<>();
+        for (int i = 0; properties.contains(PROPERTY + i + ".key"); i++) {
+            try {
+                String[] position = properties.getProperty(PROPERTY + i + ".position").getLpwstr().split(":");
+                anchors.add(new ReportAnchor(
+                        properties.getProperty(PROPERTY + i + ".sheet").getLpwstr(),
+                        properties.getProperty(PROPERTY + i + ".key").getLpwstr(),
+                        Integer.parseInt(position[1]),
+                        Integer.parseInt(position[0]),
+                        Integer.parseInt(position[2]),
+                        Boolean.parseBoolean(position[3])));
+            } catch (NullPointerException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IncorrectTemplateException("The report contains incorrect data for appending.");
+            }
+        }
+        return anchors;
+    }
+
+    static void save(XSSFWorkbook wb, List<ReportAnchor> anchors) {
+        POIXMLProperties.CustomProperties properties = wb.getProperties().getCustomProperties();
+        for (int i = 0; i < anchors.size(); i++) {
+            ReportAnchor anchor = anchors.get(i);
+            setProperty(properties, PROPERTY + i + ".sheet", anchor.sheetName);
+            setProperty(properties, PROPERTY + i + ".key", anchor.key);
+            setProperty(properties, PROPERTY + i + ".position",
+                    anchor.row + ":" + anchor.column + ":" + anchor.count + ":" + anchor.keyRow);
+        }
+    }
+
+    private static void setProperty(POIXMLProperties.CustomProperties properties, String name, String value) {
+        CTProperty property = properties.getProperty(name);
+        if (property == null) {
+            properties.addProperty(name, value);
+        } else {
+            property.setLpwstr(value);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package model;
+
+import java.io.IOException;
+
+public interface ReportCache {
+
+    byte[] get(String key) throws IOException;
+
+    void put(String key, byte[] report) throws IOException;
+
+}
@@ -0,0 +1,291 @@
+package model;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.*;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTBlip;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+//Удаляет из книги строки, стили и изображения, на которые не осталось ссылок после заполнения.
+//POI не умеет удалять записи из таблиц строк и стилей, поэтому списки таблиц пересобираются
+//через их закрытые поля; если поля недоступны, таблица остается без изменений
+class ReportCompactor {
+
+    private static final Pattern MEDIA_PART = Pattern.compile("/xl/media/.*");
+    //Закрытые поля POI, которые читает компактор; они же перечислены в reflect-config.json для native-image
+    static final String[] SHARED_STRINGS_FIELDS = {"strings", "stmap", "_sstDoc", "count", "uniqueCount"};
+    static final String[] STYLES_FIELDS = {"xfs", "styleXfs", "fonts", "fills", "borders"};
+
+    void compact(XSSFWorkbook wb) throws IOException {
+        compactSharedStrings(wb);
+        compactStyles(wb);
+        compactMedia(wb);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compactSharedStrings(XSSFWorkbook wb) {
+        SharedStringsTable sst = wb.getSharedStringSource();
+        List<CTRst> strings;
+        Map<String, Integer> stmap;
+        CTSst ctSst;
+        Method xmlText;
+        try {
+            strings = (List<CTRst>) getField(sst, SharedStringsTable.class, "strings");
+            stmap = (Map<String, Integer>) getField(sst, SharedStringsTable.class, "stmap");
+            ctSst = ((SstDocument) getField(sst, SharedStringsTable.class, "_sstDoc")).getSst();
+            xmlText = SharedStringsTable.class.getDeclaredMethod("xmlText", CTRst.class);
+            xmlText.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return;
+        }
+
+        List<CTRst> usedStrings = new ArrayList<>();
+        Map<Integer, Integer> indexes = new HashMap<>();
+        int count = 0;
+        for (CTCell ctCell : getCells(wb)) {
+            if (ctCell.getT() == STCellType.S && ctCell.isSetV()) {
+                int index = Integer.parseInt(ctCell.getV());
+                Integer newIndex = indexes.get(index);
+                if (newIndex == null) {
+                    newIndex = usedStrings.size();
+                    indexes.put(index, newIndex);
+                    usedStrings.add((CTRst) strings.get(index).copy());
+                }
+                ctCell.setV(Integer.toString(newIndex));
+                count++;
+            }
+        }
+
+        try {
+            ctSst.setSiArray(usedStrings.toArray(new CTRst[0]));
+            strings.clear();
+            stmap.clear();
+            for (CTRst string : ctSst.getSiArray()) {
+                stmap.put((String) xmlText.invoke(sst, string), strings.size());
+                strings.add(string);
+            }
+            setField(sst, SharedStringsTable.class, "count", count);
+            setField(sst, SharedStringsTable.class, "uniqueCount", usedStrings.size());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to rebuild the shared strings table", e);
+        }
+    }
+
+    //Первый формат ячейки, первый шрифт, две первые заливки и первая граница обязательны для Excel
+    @SuppressWarnings("unchecked")
+    private void compactStyles(XSSFWorkbook wb) {
+        StylesTable styles = wb.getStylesSource();
+        List<CTXf> xfs;
+        List<CTXf> styleXfs;
+        List<XSSFFont> fonts;
+        List<XSSFCellFill> fills;
+        List<XSSFCellBorder> borders;
+        try {
+            xfs = (List<CTXf>) getField(styles, StylesTable.class, "xfs");
+            styleXfs = (List<CTXf>) getField(styles, StylesTable.class, "styleXfs");
+            fonts = (List<XSSFFont>) getField(styles, StylesTable.class, "fonts");
+            fills = (List<XSSFCellFill>) getField(styles, StylesTable.class, "fills");
+            borders = (List<XSSFCellBorder>) getField(styles, StylesTable.class, "borders");
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return;
+        }
+
+        SortedSet<Long> usedXfs = new TreeSet<>(Collections.singleton(0L));
+        List<CTCell> cells = getCells(wb);
+        List<CTRow> rows = getRows(wb);
+        List<CTCol> columns = getColumns(wb);
+        cells.stream().filter(CTCell::isSetS).forEach(ctCell -> usedXfs.add(ctCell.getS()));
+        rows.stream().filter(CTRow::isSetS).forEach(ctRow -> usedXfs.add(ctRow.getS()));
+        columns.stream().filter(CTCol::isSetStyle).forEach(ctCol -> usedXfs.add(ctCol.getStyle()));
+        usedXfs.removeIf(index -> index >= xfs.size());
+
+        Map<Long, Long> xfIndexes = new HashMap<>();
+        List<CTXf> usedXfList = new ArrayList<>();
+        for (long index : usedXfs) {
+            xfIndexes.put(index, (long) usedXfList.size());
+            usedXfList.add(xfs.get((int) index));
+        }
+        cells.stream().filter(CTCell::isSetS).forEach(ctCell -> ctCell.setS(xfIndexes.getOrDefault(ctCell.getS(), 0L)));
+        rows.stream().filter(CTRow::isSetS).forEach(ctRow -> ctRow.setS(xfIndexes.getOrDefault(ctRow.getS(), 0L)));
+        columns.stream().filter(CTCol::isSetStyle).forEach(ctCol -> ctCol.setStyle(xfIndexes.getOrDefault(ctCol.getStyle(), 0L)));
+
+        List<CTXf> allXfs = new ArrayList<>(usedXfList);
+        allXfs.addAll(styleXfs);
+        Map<Long, Long> fontIndexes = compactList(fonts, allXfs, 1, CTXf::getFontId);
+        Map<Long, Long> fillIndexes = compactList(fills, allXfs, 2, CTXf::getFillId);
+        Map<Long, Long> borderIndexes = compactList(borders, allXfs, 1, CTXf::getBorderId);
+        for (CTXf xf : allXfs) {
+            if (xf.isSetFontId()) xf.setFontId(fontIndexes.getOrDefault(xf.getFontId(), 0L));
+            if (xf.isSetFillId()) xf.setFillId(fillIndexes.getOrDefault(xf.getFillId(), 0L));
+            if (xf.isSetBorderId()) xf.setBorderId(borderIndexes.getOrDefault(xf.getBorderId(), 0L));
+        }
+        xfs.clear();
+        xfs.addAll(usedXfList);
+    }
+
+    //Оставляет в списке только используемые элементы и возвращает их новые индексы
+    private <T> Map<Long, Long> compactList(List<T> list, List<CTXf> xfs, int required, IndexGetter getter) {
+        SortedSet<Long> used = new TreeSet<>();
+        for (long i = 0; i < Math.min(required, list.size()); i++) {
+            used.add(i);
+        }
+        for (CTXf xf : xfs) {
+            long index = getter.get(xf);
+            if (index < list.size()) used.add(index);
+        }
+        Map<Long, Long> indexes = new HashMap<>();
+        List<T> usedList = new ArrayList<>();
+        for (long index : used) {
+            indexes.put(index, (long) usedList.size());
+            usedList.add(list.get((int) index));
+        }
+        list.clear();
+        list.addAll(usedList);
+        return indexes;
+    }
+
+    //Одинаковые изображения заменяются ссылками на одну часть пакета,
+    //части, недостижимые по связям от корня пакета, удаляются
+    private void compactMedia(XSSFWorkbook wb) throws IOException {
+        OPCPackage pkg = wb.getPackage();
+        Map<String, PackagePart> mediaByHash = new HashMap<>();
+        try {
+            for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+                XSSFDrawing drawing = wb.getSheetAt(i).getDrawingPatriarch();
+                if (drawing != null) {
+                    deduplicateImages(drawing, mediaByHash);
+                }
+            }
+
+            Set<PackagePartName> reachable = new HashSet<>();
+            Deque<PackagePart> parts = new ArrayDeque<>();
+            for (PackageRelationship relationship : pkg.getRelationships()) {
+                addReachablePart(pkg.getPart(relationship), reachable, parts);
+            }
+            while (!parts.isEmpty()) {
+                PackagePart part = parts.poll();
+                for (PackageRelationship relationship : part.getRelationships()) {
+                    if (relationship.getTargetMode() == TargetMode.INTERNAL) {
+                        addReachablePart(part.getRelatedPart(relationship), reachable, parts);
+                    }
+                }
+            }
+            for (PackagePart part : pkg.getPartsByName(MEDIA_PART)) {
+                if (!reachable.contains(part.getPartName())) {
+                    pkg.removePart(part);
+                }
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void deduplicateImages(XSSFDrawing drawing, Map<String, PackagePart> mediaByHash) throws IOException, InvalidFormatException {
+        PackagePart drawingPart = drawing.getPackagePart();
+        Map<String, String> relationshipIds = new HashMap<>();
+        for (PackageRelationship relationship : drawingPart.getRelationshipsByType(PackageRelationshipTypes.IMAGE_PART)) {
+            if (relationship.getTargetMode() != TargetMode.INTERNAL) continue;
+            PackagePart image = drawingPart.getRelatedPart(relationship);
+            PackagePart original = mediaByHash.putIfAbsent(hash(image), image);
+            if (original != null && original != image) {
+                PackageRelationship existing = drawingPart.findExistingRelation(original);
+                if (existing == null) {
+                    existing = drawingPart.addRelationship(original.getPartName(), TargetMode.INTERNAL,
+                            relationship.getRelationshipType());
+                }
+                relationshipIds.put(relationship.getId(), existing.getId());
+            }
+        }
+        if (relationshipIds.isEmpty()) return;
+
+        for (XSSFShape shape : drawing.getShapes()) {
+            if (shape instanceof XSSFPicture) {
+                CTBlip blip = ((XSSFPicture) shape).getCTPicture().getBlipFill().getBlip();
+                String id = relationshipIds.get(blip.getEmbed());
+                if (id != null) blip.setEmbed(id);
+            }
+        }
+        for (String id : relationshipIds.keySet()) {
+            drawingPart.removeRelationship(id);
+        }
+    }
+
+    private void addReachablePart(PackagePart part, Set<PackagePartName> reachable, Deque<PackagePart> parts) {
+        if (part != null && reachable.add(part.getPartName())) {
+            parts.add(part);
+        }
+    }
+
+    private String hash(PackagePart part) throws IOException {
+        try (InputStream input = part.getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return part.getContentType() + ":" + Base64.getEncoder().encodeToString(digest.digest(input.readAllBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<CTCell> getCells(XSSFWorkbook wb) {
+        List<CTCell> cells = new ArrayList<>();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            for (Row row : wb.getSheetAt(i)) {
+                for (Cell cell : row) {
+                    cells.add(((XSSFCell) cell).getCTCell());
+                }
+            }
+        }
+        return cells;
+    }
+
+    private List<CTRow> getRows(XSSFWorkbook wb) {
+        List<CTRow> rows = new ArrayList<>();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            for (Row row : wb.getSheetAt(i)) {
+                rows.add(((XSSFRow) row).getCTRow());
+            }
+        }
+        return rows;
+    }
+
+    private List<CTCol> getColumns(XSSFWorkbook wb) {
+        List<CTCol> columns = new ArrayList<>();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            for (CTCols ctCols : wb.getSheetAt(i).getCTWorksheet().getColsList()) {
+                columns.addAll(ctCols.getColList());
+            }
+        }
+        return columns;
+    }
+
+    private Object getField(Object target, Class<?> c, String name) throws ReflectiveOperationException {
+        Field field = c.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private void setField(Object target, Class<?> c, String name, Object value) throws ReflectiveOperationException {
+        Field field = c.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @FunctionalInterface
+    private interface IndexGetter {
+        long get(CTXf xf);
+    }
+}
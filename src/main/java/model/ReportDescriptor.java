@@ -0,0 +1,29 @@
+package model;
+
+import java.util.List;
+
+public interface ReportDescriptor {
+
+    String SUFFIX = "_ReportDescriptor";
+
+    Class<?> getType();
+
+    List<KeyData> getKeys();
+
+    static String getDescriptorName(Class<?> c) {
+        String packageName = c.getPackageName();
+        String simpleName = c.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        String name = simpleName.replace('$', '_') + SUFFIX;
+        return packageName.isEmpty() ? name : packageName + "." + name;
+    }
+
+    static ReportDescriptor find(Class<?> c) {
+        try {
+            Class<?> descriptorClass = Class.forName(getDescriptorName(c), true, c.getClassLoader());
+            ReportDescriptor descriptor = (ReportDescriptor) descriptorClass.getDeclaredConstructor().newInstance();
+            return descriptor.getType() == c ? descriptor : null;
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+            return null;
+        }
+    }
+}
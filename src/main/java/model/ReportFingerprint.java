@@ -0,0 +1,121 @@
+package model;
+
+import enums.DataType;
+import enums.KeyType;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+//Ключ кэша: хэш шаблона, настроек вывода и значений всех ключей ReportKey в данных отчета
+class ReportFingerprint {
+
+    private final Map<Class<?>, List<KeyData>> classKeys;
+    private boolean singlePass;
+
+    ReportFingerprint(Map<Class<?>, List<KeyData>> classKeys) {
+        this.classKeys = classKeys;
+    }
+
+    //Данные со списками, которые читаются один раз, не хэшируются: возвращается null
+    String compute(byte[] template, Report report, Object reportData) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        DataOutputStream output = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        output.writeInt(template.length);
+        output.write(template);
+        writeSettings(output, report);
+        writeObject(output, reportData);
+        output.flush();
+        if (singlePass) return null;
+
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    //Настройки, от которых зависит файл отчета, и формат дат по умолчанию
+    private void writeSettings(DataOutputStream output, Report report) throws IOException {
+        output.writeBoolean(report.isAppendable());
+        output.writeBoolean(report.isCompactOutput());
+        writeString(output, report.getTextStorage().name());
+        output.writeInt(report.getMaxRowsPerSheet());
+        output.writeInt(report.getCompressionLevel());
+        output.writeBoolean(report.isStoreImages());
+        writeString(output, TimeZone.getDefault().getID());
+        writeString(output, Locale.getDefault(Locale.Category.FORMAT).toLanguageTag());
+    }
+
+    private void writeObject(DataOutputStream output, Object data) throws IOException {
+        if (data == null) {
+            output.writeByte(0);
+            return;
+        }
+        output.writeByte(1);
+        List<KeyData> keys = classKeys.get(Report.getDataType(data));
+        if (keys == null) {
+            writeString(output, data.toString());
+            return;
+        }
+        for (KeyData keyData : keys) {
+            writeString(output, keyData.getName());
+            Object value;
+            try {
+                value = keyData.getValue(data);
+            } catch (IllegalAccessException e) {
+                value = null;
+            }
+            if (keyData.getReportKey().keyType() == KeyType.COMPLEX) {
+                writeList(output, value);
+            } else {
+                writeString(output, value == null ? null : value.toString());
+                if (value != null && keyData.getReportKey().type() == DataType.IMAGE) {
+                    File image = new File(value.toString());
+                    output.writeLong(image.length());
+                    output.writeLong(image.lastModified());
+                }
+            }
+        }
+    }
+
+    private void writeList(DataOutputStream output, Object value) throws IOException {
+        if (value instanceof ColumnarBatch) value = ((ColumnarBatch<?>) value).rows();
+        //Iterable, кроме списка, может не отдать элементы повторно
+        if (value instanceof Iterator || value instanceof Iterable && !(value instanceof List)) singlePass = true;
+        if (!(value instanceof List)) {
+            output.writeInt(-1);
+            return;
+        }
+        List<?> list = (List<?>) value;
+        output.writeInt(list.size());
+        for (Object element : list) {
+            writeObject(output, element);
+        }
+    }
+
+    private void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,363 @@
+package model;
+
+import annotation.ReportKey;
+import enums.Aggregate;
+import enums.Direction;
+import enums.KeyType;
+import exception.*;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+//Обратное заполнение: значения из отчета, созданного по шаблону, переносятся в объекты с аннотацией ReportKey.
+//Шаблон разбирается целиком, а отчет читается потоково, по одной строке
+public class ReportImporter<T> {
+
+    private final Class<T> type;
+    private final Map<String, ImportKey> keysMap;
+    private final Set<String> aggregateKeys;
+
+    public ReportImporter(Class<T> type) throws ReportKeyException {
+        this.type = type;
+        this.keysMap = new HashMap<>();
+        this.aggregateKeys = new HashSet<>();
+        fillKeysMap(type, new HashSet<>());
+    }
+
+    public T importReport(InputStream template, File file) throws IOException, IncorrectTemplateException, ReportKeyException {
+        Map<String, List<RowPattern>> sheets = compileTemplate(template);
+        T data = newInstance(type);
+
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Unable to open the report " + file, e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (iterator.hasNext()) {
+                try (InputStream input = iterator.next()) {
+                    List<RowPattern> rows = sheets.remove(iterator.getSheetName());
+                    if (rows != null) {
+                        try (SheetRowReader sheet = new SheetRowReader(input, strings)) {
+                            fillObject(rows, data, sheet, Collections.emptyList());
+                        }
+                    }
+                }
+            }
+        } catch (OpenXML4JException | SAXException e) {
+            throw new IOException("Unable to read the report " + file, e);
+        } finally {
+            pkg.revert();
+        }
+        return data;
+    }
+
+    private void fillKeysMap(Class<?> c, Set<Class<?>> classes) throws ReportKeyException {
+        if (!classes.add(c)) return;
+        for (Field field : c.getDeclaredFields()) {
+            if (field.isAnnotationPresent(ReportKey.class)) {
+                ReportKey reportKey = field.getAnnotation(ReportKey.class);
+                String key = Report.getKeyName(c, field, reportKey);
+                if (keysMap.containsKey(key)) {
+                    throw new IdenticalReportKeyException("Annotated fields have the identical names of ReportKey");
+                }
+
+                Class<?> elementType = null;
+                if (reportKey.keyType() == KeyType.COMPLEX) {
+                    boolean grouped = !reportKey.groupBy().isEmpty();
+                    if (List.class.isAssignableFrom(field.getType()) || grouped && (Iterable.class.isAssignableFrom(field.getType())
+                            || Iterator.class.isAssignableFrom(field.getType()))) {
+                        elementType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+                    } else {
+                        throw new IncorrectReportKeyException("The annotation ReportKey does not match the field");
+                    }
+                }
+                field.setAccessible(true);
+                keysMap.put(key, new ImportKey(key, field, reportKey, elementType));
+                for (Aggregate aggregate : reportKey.aggregates()) {
+                    aggregateKeys.add(Aggregates.getKeyName(aggregate, key));
+                }
+                if (elementType != null) {
+                    fillKeysMap(elementType, classes);
+                }
+            }
+        }
+    }
+
+    //Листы заголовков и подвалов групп не импортируются
+    private boolean isGroupSheet(String sheetName) {
+        for (String suffix : new String[]{Report.GROUP_HEADER, Report.GROUP_FOOTER}) {
+            if (sheetName.endsWith(suffix) && keysMap.containsKey(sheetName.substring(0, sheetName.length() - suffix.length()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, List<RowPattern>> compileTemplate(InputStream template) throws IOException, IncorrectTemplateException {
+        Map<String, List<RowPattern>> sheets = new HashMap<>();
+        try (XSSFWorkbook wb = new XSSFWorkbook(template)) {
+            for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+                XSSFSheet sheet = wb.getSheetAt(i);
+                String sheetName = sheet.getSheetName();
+                if (!sheetName.equals(Report.DATABASE_KEY) && !keysMap.containsKey(sheetName) && !isGroupSheet(sheetName)) {
+                    sheets.put(sheetName, compileSheet(sheet, new HashSet<>()));
+                }
+            }
+        }
+        return sheets;
+    }
+
+    private List<RowPattern> compileSheet(XSSFSheet sheet, Set<String> complexKeys) throws IncorrectTemplateException {
+        List<RowPattern> rows = new ArrayList<>();
+        for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+            RowPattern pattern = new RowPattern();
+            XSSFRow row = sheet.getRow(i);
+            if (row != null) {
+                for (Cell cell : row) {
+                    Object value = getTemplateValue(cell);
+                    if (value == null) continue;
+                    if (value.equals(Report.COUNTER_KEY)) {
+                        pattern.counterColumn = cell.getColumnIndex();
+                    } else if (keysMap.containsKey(value)) {
+                        ImportKey key = keysMap.get(value);
+                        XSSFSheet blockSheet = sheet.getWorkbook().getSheet(key.name);
+                        if (key.reportKey.keyType() == KeyType.SINGLE) {
+                            pattern.keys.put(cell.getColumnIndex(), key);
+                        } else if (!key.reportKey.groupBy().isEmpty()) {
+                            //Строки заголовков и итогов групп перемежаются с элементами и по шаблону не разбираются
+                            throw new IncorrectTemplateException("The grouped complex key " + key.name + " cannot be imported.");
+                        } else if (key.reportKey.direction() == Direction.RIGHT) {
+                            //Элементы горизонтального списка идут по колонкам, а отчет сопоставляется по строкам
+                            throw new IncorrectTemplateException("The horizontal complex key " + key.name + " cannot be imported.");
+                        } else if (blockSheet != null) {
+                            if (!complexKeys.add(key.name)) {
+                                throw new IncorrectTemplateException("Looped complex keys are not allowed.");
+                            }
+                            pattern.complexKey = key;
+                            pattern.block = compileSheet(blockSheet, complexKeys);
+                            complexKeys.remove(key.name);
+                        }
+                    } else if (!aggregateKeys.contains(value) && !value.toString().contains("${")) {
+                        //Итоги и текст с подстановками не совпадают с заполненными и не помогают найти строку
+                        pattern.constants.put(cell.getColumnIndex(), value);
+                    }
+                }
+            }
+            rows.add(pattern);
+        }
+        return rows;
+    }
+
+    private Object getTemplateValue(Cell cell) {
+        switch (cell.getCellType()) {
+            case STRING:
+                return cell.getStringCellValue().isEmpty() ? null : cell.getStringCellValue();
+            case NUMERIC:
+                return cell.getNumericCellValue();
+            case BOOLEAN:
+                return cell.getBooleanCellValue();
+            default:
+                return null;
+        }
+    }
+
+    //Строки шаблона сопоставляются со строками отчета по порядку. Список сложного ключа продолжается,
+    //пока очередная строка похожа на начало блока и не похожа на строку, которая идет после списка
+    private void fillObject(List<RowPattern> rows, Object target, SheetRowReader sheet, List<Terminator> terminators) throws IOException, IncorrectTemplateException, ReportKeyException {
+        for (int i = 0; i < rows.size(); i++) {
+            RowPattern pattern = rows.get(i);
+            if (pattern.complexKey != null) {
+                List<Terminator> listTerminators = new ArrayList<>(terminators);
+                if (i + 1 < rows.size()) listTerminators.add(new Terminator(rows.get(i + 1), 0));
+
+                List<Object> list = new ArrayList<>();
+                RowPattern firstRow = pattern.block.isEmpty() ? new RowPattern() : pattern.block.get(0);
+                while (isBlockStart(firstRow, sheet.peek(), list.size() + 1, listTerminators)) {
+                    Object element = newInstance(pattern.complexKey.elementType);
+                    List<Terminator> blockTerminators = new ArrayList<>(listTerminators);
+                    blockTerminators.add(new Terminator(firstRow, list.size() + 2));
+                    fillObject(pattern.block, element, sheet, blockTerminators);
+                    list.add(element);
+                }
+                setValue(target, pattern.complexKey, list);
+                //Пустой список оставляет строку ключа, если ключ не временный
+                if (list.isEmpty() && !(pattern.complexKey.reportKey.temporary() && pattern.keys.isEmpty())) {
+                    fillRow(pattern, target, sheet.next());
+                }
+            } else if (!isDeletedRow(pattern, sheet.peek())) {
+                fillRow(pattern, target, sheet.next());
+            }
+        }
+    }
+
+    private boolean isBlockStart(RowPattern firstRow, Map<Integer, Object> values, int counter, List<Terminator> terminators) {
+        if (values.isEmpty()) return false;
+        if (firstRow.hasEvidence()) return firstRow.matches(values, counter);
+        for (Terminator terminator : terminators) {
+            if (terminator.pattern.hasEvidence() && terminator.pattern.matches(values, terminator.counter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Строка с единственным временным ключом удаляется из отчета, если значения нет
+    private boolean isDeletedRow(RowPattern pattern, Map<Integer, Object> values) {
+        if (pattern.keys.size() != 1) return false;
+        Map.Entry<Integer, ImportKey> entry = pattern.keys.entrySet().iterator().next();
+        if (!entry.getValue().reportKey.temporary()) return false;
+        if (!pattern.constants.isEmpty()) return !pattern.matches(values, 0);
+        return values.get(entry.getKey()) == null;
+    }
+
+    private void fillRow(RowPattern pattern, Object target, Map<Integer, Object> values) throws IncorrectTemplateException, ReportKeyException {
+        for (Map.Entry<Integer, ImportKey> entry : pattern.keys.entrySet()) {
+            Object value = values.get(entry.getKey());
+            if (value == null || value.equals("")) continue;
+            ImportKey key = entry.getValue();
+            Object fieldValue = convert(key, value);
+            if (fieldValue != null) setValue(target, key, fieldValue);
+        }
+    }
+
+    private Object convert(ImportKey key, Object value) throws FormatReportKeyException {
+        ReportKey reportKey = key.reportKey;
+        Class<?> fieldType = key.field.getType();
+        try {
+            switch (reportKey.type()) {
+                case DATE:
+                    return toFieldValue(Long.toString(toMillis(value, reportKey.dateFormatPattern())), fieldType);
+                case TIME:
+                    return toFieldValue(Long.toString(toMillis(value, reportKey.timeFormatPattern())), fieldType);
+                case IMAGE:
+                    return null;
+                default:
+                    return toFieldValue(toText(value), fieldType);
+            }
+        } catch (IllegalArgumentException | ArithmeticException | ParseException e) {
+            throw new FormatReportKeyException("The cell value does not match the field of the key " + key.name + ".");
+        }
+    }
+
+    private long toMillis(Object value, String pattern) throws ParseException {
+        if (value instanceof Double) {
+            return DateUtil.getJavaDate((Double) value).getTime();
+        }
+        return new SimpleDateFormat(pattern).parse(value.toString()).getTime();
+    }
+
+    private String toText(Object value) {
+        if (value instanceof Double) {
+            double number = (Double) value;
+            if (Double.isNaN(number) || Double.isInfinite(number)) return value.toString();
+            return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+        }
+        return value.toString();
+    }
+
+    private Object toFieldValue(String text, Class<?> fieldType) {
+        if (fieldType == String.class || fieldType == Object.class || fieldType == CharSequence.class) return text;
+        if (fieldType == double.class || fieldType == Double.class) return Double.valueOf(text);
+        if (fieldType == float.class || fieldType == Float.class) return Float.valueOf(text);
+        if (fieldType == boolean.class || fieldType == Boolean.class) return Boolean.valueOf(text);
+        if (fieldType == BigDecimal.class) return new BigDecimal(text);
+
+        BigDecimal number = new BigDecimal(text);
+        if (fieldType == int.class || fieldType == Integer.class) return number.intValueExact();
+        if (fieldType == long.class || fieldType == Long.class) return number.longValueExact();
+        if (fieldType == short.class || fieldType == Short.class) return number.shortValueExact();
+        if (fieldType == byte.class || fieldType == Byte.class) return number.byteValueExact();
+        if (fieldType == BigInteger.class) return number.toBigIntegerExact();
+        throw new IllegalArgumentException("Unsupported field type " + fieldType.getName());
+    }
+
+    private void setValue(Object target, ImportKey key, Object value) throws IncorrectTemplateException {
+        try {
+            key.field.set(target, value);
+        } catch (IllegalArgumentException e) {
+            throw new IncorrectTemplateException("Incorrect use of the key " + key.name + ". There is no access to the data object.");
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <E> E newInstance(Class<E> c) throws IncorrectReportKeyException {
+        try {
+            Constructor<E> constructor = c.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IncorrectReportKeyException("The class " + c.getName() + " must have a constructor without parameters");
+        }
+    }
+
+    private static class ImportKey {
+        private final String name;
+        private final Field field;
+        private final ReportKey reportKey;
+        private final Class<?> elementType;
+
+        private ImportKey(String name, Field field, ReportKey reportKey, Class<?> elementType) {
+            this.name = name;
+            this.field = field;
+            this.reportKey = reportKey;
+            this.elementType = elementType;
+        }
+    }
+
+    //Строка шаблона: ключи, постоянные значения и счетчик по номерам столбцов
+    private static class RowPattern {
+        private final Map<Integer, ImportKey> keys = new TreeMap<>();
+        private final Map<Integer, Object> constants = new TreeMap<>();
+        private int counterColumn = -1;
+        private ImportKey complexKey;
+        private List<RowPattern> block;
+
+        //Строку можно узнать в отчете только по постоянным значениям или счетчику
+        private boolean hasEvidence() {
+            return !constants.isEmpty() || counterColumn >= 0;
+        }
+
+        private boolean matches(Map<Integer, Object> values, int counter) {
+            for (Map.Entry<Integer, Object> entry : constants.entrySet()) {
+                if (!entry.getValue().equals(values.get(entry.getKey()))) return false;
+            }
+            return counterColumn < 0 || Double.valueOf(counter).equals(values.get(counterColumn));
+        }
+    }
+
+    private static class Terminator {
+        private final RowPattern pattern;
+        private final int counter;
+
+        private Terminator(RowPattern pattern, int counter) {
+            this.pattern = pattern;
+            this.counter = counter;
+        }
+    }
+}
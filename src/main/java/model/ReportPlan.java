@@ -0,0 +1,132 @@
+package model;
+
+import enums.DataType;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class ReportPlan {
+
+    private final Map<String, Long> insertedRows;
+    private final Map<String, Long> insertedColumns;
+    private final Map<DataType, Long> cells;
+    private final Set<String> unknownSizeKeys;
+    private long counterCells;
+    private long temporaryRows;
+    private long images;
+    private long imageBytes;
+    private long estimatedMemory;
+    private Duration estimatedTime;
+
+    ReportPlan() {
+        this.insertedRows = new HashMap<>();
+        this.insertedColumns = new HashMap<>();
+        this.cells = new EnumMap<>(DataType.class);
+        this.unknownSizeKeys = new LinkedHashSet<>();
+        this.estimatedTime = Duration.ZERO;
+    }
+
+    public Map<String, Long> getInsertedRows() {
+        return Collections.unmodifiableMap(insertedRows);
+    }
+
+    public long getInsertedRows(String complexKey) {
+        return insertedRows.getOrDefault(complexKey, 0L);
+    }
+
+    public long getTotalInsertedRows() {
+        return insertedRows.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    //Списки, раскрываемые вправо, добавляют колонки, а строк - только на высоту блока
+    public Map<String, Long> getInsertedColumns() {
+        return Collections.unmodifiableMap(insertedColumns);
+    }
+
+    public long getInsertedColumns(String complexKey) {
+        return insertedColumns.getOrDefault(complexKey, 0L);
+    }
+
+    public Map<DataType, Long> getCells() {
+        return Collections.unmodifiableMap(cells);
+    }
+
+    public long getCells(DataType dataType) {
+        return cells.getOrDefault(dataType, 0L);
+    }
+
+    public long getTotalCells() {
+        return cells.values().stream().mapToLong(Long::longValue).sum() + counterCells;
+    }
+
+    //Потоковые списки читаются только при заполнении: их строки и ячейки в план не входят
+    public Set<String> getUnknownSizeKeys() {
+        return Collections.unmodifiableSet(unknownSizeKeys);
+    }
+
+    public long getCounterCells() {
+        return counterCells;
+    }
+
+    public long getTemporaryRows() {
+        return temporaryRows;
+    }
+
+    public long getImages() {
+        return images;
+    }
+
+    public long getImageBytes() {
+        return imageBytes;
+    }
+
+    public long getEstimatedMemory() {
+        return estimatedMemory;
+    }
+
+    public Duration getEstimatedTime() {
+        return estimatedTime;
+    }
+
+    void addInsertedRows(String complexKey, long rows) {
+        insertedRows.merge(complexKey, rows, Long::sum);
+    }
+
+    void addInsertedColumns(String complexKey, long columns) {
+        insertedColumns.merge(complexKey, columns, Long::sum);
+    }
+
+    void addUnknownSize(String complexKey) {
+        unknownSizeKeys.add(complexKey);
+    }
+
+    void addCell(DataType dataType) {
+        cells.merge(dataType, 1L, Long::sum);
+    }
+
+    void addCounterCell() {
+        counterCells++;
+    }
+
+    void addTemporaryRow() {
+        temporaryRows++;
+    }
+
+    void addImage(long bytes) {
+        images++;
+        imageBytes += bytes;
+    }
+
+    void setEstimatedMemory(long estimatedMemory) {
+        this.estimatedMemory = estimatedMemory;
+    }
+
+    void setEstimatedTime(Duration estimatedTime) {
+        this.estimatedTime = estimatedTime;
+    }
+}
@@ -0,0 +1,96 @@
+package model;
+
+import annotation.ReportKey;
+import enums.DataType;
+import enums.KeyType;
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import org.apache.poi.xssf.usermodel.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+//Рендерит встроенный шаблон, чтобы загрузить классы POI и XMLBeans до первого отчета
+class ReportWarmUp {
+
+    void run() throws IOException {
+        File image = File.createTempFile("warm-up", ".png");
+        File output = File.createTempFile("warm-up", ".xlsx");
+        try {
+            ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", image);
+            WarmUpData data = new WarmUpData(image.getPath());
+            new Report(data).createReport(new ByteArrayInputStream(createTemplate()), output);
+        } catch (IncorrectTemplateException | ReportKeyException e) {
+            throw new IllegalStateException("The built-in warm up template is incorrect", e);
+        } finally {
+            Files.deleteIfExists(image.toPath());
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    private byte[] createTemplate() throws IOException {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sheet = wb.createSheet("Sheet1");
+        XSSFCellStyle dateStyle = wb.createCellStyle();
+        dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("dd.mm.yyyy"));
+
+        sheet.createRow(0).createCell(0).setCellValue("key_WarmUpData_text");
+        XSSFCell dateCell = sheet.createRow(1).createCell(0);
+        dateCell.setCellValue("key_WarmUpData_date");
+        dateCell.setCellStyle(dateStyle);
+        sheet.createRow(2).createCell(0).setCellValue("key_WarmUpData_time");
+        sheet.createRow(3).createCell(0).setCellValue("key_WarmUpData_temporary");
+        sheet.createRow(4).createCell(0).setCellValue("complex_WarmUpData_rows");
+        sheet.createRow(5).createCell(0).setCellValue("key_WarmUpData_image");
+
+        XSSFRow row = wb.createSheet("complex_WarmUpData_rows").createRow(0);
+        row.createCell(0).setCellValue("key_counter");
+        row.createCell(1).setCellValue("key_WarmUpRow_value");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        wb.write(output);
+        wb.close();
+        return output.toByteArray();
+    }
+
+    static class WarmUpData {
+
+        @ReportKey
+        private final String text = "text";
+
+        @ReportKey(type = DataType.DATE)
+        private final long date = System.currentTimeMillis();
+
+        @ReportKey(type = DataType.TIME)
+        private final long time = System.currentTimeMillis();
+
+        @ReportKey(temporary = true)
+        private final String temporary = null;
+
+        @ReportKey(keyType = KeyType.COMPLEX)
+        private final List<WarmUpRow> rows = List.of(new WarmUpRow(1), new WarmUpRow(2));
+
+        @ReportKey(type = DataType.IMAGE)
+        private final String image;
+
+        WarmUpData(String image) {
+            this.image = image;
+        }
+    }
+
+    static class WarmUpRow {
+
+        @ReportKey(type = DataType.NUMERIC)
+        private final double value;
+
+        WarmUpRow(double value) {
+            this.value = value;
+        }
+    }
+}
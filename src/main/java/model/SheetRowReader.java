@@ -0,0 +1,157 @@
+package model;
+
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStrings;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+//Потоковое чтение листа из пакета: в памяти находится только текущая строка.
+//Строки запрашиваются по порядку, отсутствующие в листе строки возвращаются пустыми
+class SheetRowReader implements Closeable {
+
+    private final XMLStreamReader reader;
+    private final SharedStrings strings;
+    private SheetRow pending;
+    private int position;
+    private int lastRow = -1;
+
+    SheetRowReader(InputStream input, SharedStrings strings) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            this.reader = factory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read the sheet", e);
+        }
+        this.strings = strings;
+    }
+
+    //Значения ячеек текущей строки: String, Double или Boolean по номеру столбца
+    Map<Integer, Object> peek() throws IOException {
+        while (pending == null || pending.index < position) {
+            pending = readRow();
+            if (pending == null) return Collections.emptyMap();
+        }
+        return (pending.index == position) ? pending.values : Collections.emptyMap();
+    }
+
+    Map<Integer, Object> next() throws IOException {
+        Map<Integer, Object> values = peek();
+        if (pending != null && pending.index == position) {
+            pending = null;
+        }
+        position++;
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to close the sheet", e);
+        }
+    }
+
+    private SheetRow readRow() throws IOException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("row")) {
+                    String reference = reader.getAttributeValue(null, "r");
+                    lastRow = (reference == null) ? lastRow + 1 : Integer.parseInt(reference) - 1;
+                    return new SheetRow(lastRow, readCells());
+                }
+            }
+            return null;
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Unable to read the sheet", e);
+        }
+    }
+
+    private Map<Integer, Object> readCells() throws XMLStreamException {
+        Map<Integer, Object> values = new HashMap<>();
+        int column = -1;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("row")) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("c")) {
+                String reference = reader.getAttributeValue(null, "r");
+                column = (reference == null) ? column + 1 : new CellReference(reference).getCol();
+                Object value = readCell(reader.getAttributeValue(null, "t"));
+                if (value != null) values.put(column, value);
+            }
+        }
+        return values;
+    }
+
+    private Object readCell(String type) throws XMLStreamException {
+        String value = null;
+        StringBuilder inlineValue = new StringBuilder();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("c")) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "v":
+                        value = reader.getElementText();
+                        break;
+                    case "t":
+                        inlineValue.append(reader.getElementText());
+                        break;
+                    case "rPh":
+                        skipElement();
+                        break;
+                }
+            }
+        }
+
+        if (type == null || type.equals("n")) {
+            return (value == null || value.isEmpty()) ? null : Double.valueOf(value);
+        }
+        switch (type) {
+            case "s":
+                return (value == null) ? null : strings.getItemAt(Integer.parseInt(value)).getString();
+            case "inlineStr":
+                return inlineValue.toString();
+            case "str":
+                return value;
+            case "b":
+                return (value == null) ? null : value.equals("1");
+            default:
+                return null;
+        }
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    private static class SheetRow {
+        private final int index;
+        private final Map<Integer, Object> values;
+
+        private SheetRow(int index, Map<Integer, Object> values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+}
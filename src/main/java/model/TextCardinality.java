@@ -0,0 +1,40 @@
+package model;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Оценивает долю уникальных значений текстового ключа по первым значениям,
+//после выборки решение фиксируется и значения больше не хранятся
+class TextCardinality {
+
+    static final int MIN_SAMPLE_SIZE = 100;
+    static final int MAX_SAMPLE_SIZE = 1000;
+    static final double INLINE_RATIO = 0.5;
+
+    private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+
+    boolean isHigh(String key, String value) {
+        return samples.computeIfAbsent(key, k -> new Sample()).add(value);
+    }
+
+    private static class Sample {
+        private Set<String> values = new HashSet<>();
+        private int count;
+        private boolean high;
+
+        synchronized boolean add(String value) {
+            if (values == null) {
+                return high;
+            }
+            values.add(value);
+            count++;
+            high = count >= MIN_SAMPLE_SIZE && values.size() > count * INLINE_RATIO;
+            if (count == MAX_SAMPLE_SIZE) {
+                values = null;
+            }
+            return high;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+//Текст ячейки с подстановками ${key}, один раз разобранный на постоянные части и ключи.
+//Форматы дат и времени ключей тоже создаются при разборе. Неизвестные подстановки остаются в тексте без изменений
+class TextTemplate {
+
+    private static final String PREFIX = "${";
+    private static final String SUFFIX = "}";
+
+    private final String[] literals;
+    private final String[] keys;
+    private final DateTimeFormatter[] formatters;
+
+    private TextTemplate(List<String> literals, List<String> keys, List<DateTimeFormatter> formatters) {
+        this.literals = literals.toArray(new String[0]);
+        this.keys = keys.toArray(new String[0]);
+        this.formatters = formatters.toArray(new DateTimeFormatter[0]);
+    }
+
+    static TextTemplate compile(String text, Predicate<String> isKey, Function<String, DateTimeFormatter> createFormatter) {
+        List<String> literals = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<DateTimeFormatter> formatters = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (position < text.length()) {
+            int start = text.indexOf(PREFIX, position);
+            int end = (start < 0) ? -1 : text.indexOf(SUFFIX, start + PREFIX.length());
+            if (end < 0) {
+                break;
+            }
+            String key = text.substring(start + PREFIX.length(), end);
+            if (isKey.test(key)) {
+                literal.append(text, position, start);
+                literals.add(literal.toString());
+                keys.add(key);
+                formatters.add(createFormatter.apply(key));
+                literal.setLength(0);
+            } else {
+                literal.append(text, position, end + SUFFIX.length());
+            }
+            position = end + SUFFIX.length();
+        }
+        literal.append(text, position, text.length());
+        literals.add(literal.toString());
+        return new TextTemplate(literals, keys, formatters);
+    }
+
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String getKey(int index) {
+        return keys[index];
+    }
+
+    //null, если у ключа нет формата даты или времени
+    DateTimeFormatter getFormatter(int index) {
+        return formatters[index];
+    }
+
+    String render(String[] values) {
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        for (String value : values) length += value.length();
+        StringBuilder text = new StringBuilder(length);
+        text.append(literals[0]);
+        for (int i = 0; i < keys.length; i++) {
+            text.append(values[i]).append(literals[i + 1]);
+        }
+        return text.toString();
+    }
+}
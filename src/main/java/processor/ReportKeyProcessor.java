@@ -0,0 +1,243 @@
+package processor;
+
+import annotation.ReportKey;
+import enums.KeyType;
+import model.ColumnarBatch;
+import model.ReportDescriptor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.SimpleAnnotationValueVisitor9;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+//Генерирует ReportDescriptor для каждого класса с полями ReportKey,
+//классы, которые нельзя описать при компиляции, обрабатываются рефлексией
+@SupportedAnnotationTypes("annotation.ReportKey")
+public class ReportKeyProcessor extends AbstractProcessor {
+
+    private static final String COMPLEX_KEY = "complex_";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, List<VariableElement>> fieldsByClass = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(ReportKey.class)) {
+            if (element.getKind() == ElementKind.FIELD) {
+                fieldsByClass.computeIfAbsent((TypeElement) element.getEnclosingElement(), k -> new ArrayList<>())
+                        .add((VariableElement) element);
+            }
+        }
+        fieldsByClass.forEach(this::generateDescriptor);
+        return false;
+    }
+
+    private void generateDescriptor(TypeElement type, List<VariableElement> fields) {
+        if (!isAccessibleFromPackage(type)) {
+            note(type, "the class is not accessible from its package");
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (VariableElement field : fields) {
+            String key = describeKey(type, field);
+            if (key == null) {
+                return;
+            }
+            keys.add(key);
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + ReportDescriptor.SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        String typeName = type.getQualifiedName().toString();
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            if (!packageName.isEmpty()) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+            writer.write("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")\n");
+            writer.write("public final class " + simpleName + " implements model.ReportDescriptor {\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public Class<?> getType() {\n");
+            writer.write("        return " + typeName + ".class;\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public java.util.List<model.KeyData> getKeys() {\n");
+            writer.write("        java.util.List<model.KeyData> keys = new java.util.ArrayList<>();\n");
+            for (String key : keys) {
+                writer.write("        keys.add(" + key + ");\n");
+            }
+            writer.write("        return keys;\n");
+            writer.write("    }\n");
+            writer.write("}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to generate the report descriptor: " + e.getMessage(), type);
+        }
+    }
+
+    private String describeKey(TypeElement type, VariableElement field) {
+        AnnotationMirror mirror = getReportKeyMirror(field);
+        ReportKey reportKey = field.getAnnotation(ReportKey.class);
+        String typeName = type.getQualifiedName().toString();
+        String fieldName = field.getSimpleName().toString();
+
+        String key = reportKey.name();
+        if (key.equals("default")) {
+            String prefix = (reportKey.keyType() == KeyType.COMPLEX) ? COMPLEX_KEY : "key_";
+            key = prefix + type.getSimpleName() + "_" + fieldName;
+        }
+        String description = reportKey.description();
+        if (description.equals("default")) {
+            description = "object: " + type.getSimpleName() + ", " + "field: " + fieldName;
+        }
+
+        String elementType = "null";
+        if (reportKey.keyType() == KeyType.COMPLEX) {
+            TypeMirror element = getListElementType(field.asType(), !reportKey.groupBy().isEmpty());
+            if (element == null) {
+                note(type, "the complex key " + fieldName + " is not a List of a class");
+                return null;
+            }
+            elementType = processingEnv.getTypeUtils().erasure(element) + ".class";
+        }
+
+        String accessor = describeAccessor(type, field);
+        return "new model.KeyData(" + literal(key) + ", " + literal(description) + ", "
+                + describeReportKey(mirror) + ", " + typeName + ".class, " + elementType + ", " + accessor + ", " + literal(fieldName) + ")";
+    }
+
+    private String describeAccessor(TypeElement type, VariableElement field) {
+        String typeName = type.getQualifiedName().toString();
+        String fieldName = field.getSimpleName().toString();
+        if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+            return "target -> ((" + typeName + ") target)." + fieldName;
+        }
+        String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String methodName = method.getSimpleName().toString();
+            boolean isGetter = methodName.equals("get" + capitalized)
+                    || (methodName.equals("is" + capitalized) && field.asType().getKind() == TypeKind.BOOLEAN);
+            if (isGetter && method.getParameters().isEmpty()
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                return "target -> ((" + typeName + ") target)." + methodName + "()";
+            }
+        }
+        return "model.KeyAccessor.field(" + typeName + ".class, " + literal(fieldName) + ")";
+    }
+
+    private String describeReportKey(AnnotationMirror mirror) {
+        StringBuilder builder = new StringBuilder("new annotation.ReportKey() {");
+        builder.append(" public Class<? extends java.lang.annotation.Annotation> annotationType() {"
+                + " return annotation.ReportKey.class; }");
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        values.forEach((method, value) -> builder.append(" public ")
+                .append(method.getReturnType())
+                .append(' ')
+                .append(method.getSimpleName())
+                .append("() { return ")
+                .append(value.accept(new ValueLiteral(), method.getReturnType()))
+                .append("; }"));
+        return builder.append(" }").toString();
+    }
+
+    //Сгруппированный список может быть любым Iterable или Iterator, он читается одним проходом
+    private TypeMirror getListElementType(TypeMirror fieldType, boolean grouped) {
+        if (fieldType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(fieldType);
+        boolean isList = isAssignable(erasure, List.class) || !grouped && isAssignable(erasure, ColumnarBatch.class);
+        if (!isList && !(grouped && (isAssignable(erasure, Iterable.class) || isAssignable(erasure, Iterator.class)))) {
+            return null;
+        }
+        List<? extends TypeMirror> arguments = ((DeclaredType) fieldType).getTypeArguments();
+        if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return arguments.get(0);
+    }
+
+    private boolean isAssignable(TypeMirror erasure, Class<?> c) {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(c.getName());
+        return processingEnv.getTypeUtils().isAssignable(erasure, processingEnv.getTypeUtils().erasure(element.asType()));
+    }
+
+    private AnnotationMirror getReportKeyMirror(VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(ReportKey.class.getName())) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("The field is not annotated with ReportKey");
+    }
+
+    private boolean isAccessibleFromPackage(TypeElement type) {
+        Element element = type;
+        while (element.getKind().isClass() || element.getKind().isInterface()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE
+                    && !element.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private String literal(String value) {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+
+    private void note(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "The report descriptor is not generated, " + reason + ". Reflection will be used.", type);
+    }
+
+    private class ValueLiteral extends SimpleAnnotationValueVisitor9<String, TypeMirror> {
+
+        @Override
+        protected String defaultAction(Object value, TypeMirror type) {
+            return processingEnv.getElementUtils().getConstantExpression(value);
+        }
+
+        @Override
+        public String visitEnumConstant(VariableElement constant, TypeMirror type) {
+            return ((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "." + constant.getSimpleName();
+        }
+
+        @Override
+        public String visitType(TypeMirror value, TypeMirror type) {
+            return processingEnv.getTypeUtils().erasure(value) + ".class";
+        }
+
+        @Override
+        public String visitArray(List<? extends AnnotationValue> values, TypeMirror type) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            return "new " + processingEnv.getTypeUtils().erasure(componentType) + "[]{"
+                    + values.stream().map(value -> value.accept(this, componentType)).collect(Collectors.joining(", "))
+                    + "}";
+        }
+    }
+}
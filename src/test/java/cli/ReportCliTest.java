@@ -0,0 +1,73 @@
+package cli;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class ReportCliTest {
+
+    private File file;
+    private PrintStream err;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+        err = new PrintStream(new ByteArrayOutputStream());
+    }
+
+    @After
+    public void after() throws IOException {
+        if (Files.exists(file.toPath())) Files.delete(file.toPath());
+    }
+
+    @Test
+    public void renderTemplateFromJsonTest() throws IOException {
+        int status = ReportCli.run(new String[]{getTemplate("Template32.xlsx"),
+                "src/test/resources/data/DataSet.json", file.getPath(), "entity.DataSet"}, err);
+        assertEquals(0, status);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        String actual = wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue();
+        String actual2 = wb.getSheetAt(0).getRow(1).getCell(0).getStringCellValue();
+        wb.close();
+        assertEquals("someText1", actual);
+        assertEquals("someText2", actual2);
+    }
+
+    @Test
+    public void renderSingleKeysFromJsonTest() throws IOException {
+        int status = ReportCli.run(new String[]{getTemplate("Template1.xlsx"),
+                "src/test/resources/data/DataSet.json", file.getPath(), "entity.DataSet"}, err);
+        assertEquals(0, status);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        String actual = wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue();
+        wb.close();
+        assertEquals("SomeText", actual);
+    }
+
+    @Test
+    public void wrongArgumentsTest() {
+        assertEquals(2, ReportCli.run(new String[]{"template.xlsx"}, err));
+        assertFalse(Files.exists(file.toPath()));
+    }
+
+    @Test
+    public void unknownDataClassTest() {
+        int status = ReportCli.run(new String[]{getTemplate("Template1.xlsx"),
+                "src/test/resources/data/DataSet.json", file.getPath(), "entity.Unknown"}, err);
+        assertEquals(1, status);
+    }
+
+    private String getTemplate(String name) {
+        return Path.of("src/test/resources/template", name).toString();
+    }
+}
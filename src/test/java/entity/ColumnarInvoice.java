@@ -0,0 +1,27 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.KeyType;
+import model.ColumnarBatch;
+
+public class ColumnarInvoice {
+
+    @ReportKey
+    private String number;
+
+    @ReportKey(keyType = KeyType.COMPLEX)
+    private ColumnarBatch<InvoiceLine> lines;
+
+    public ColumnarInvoice(String number, ColumnarBatch<InvoiceLine> lines) {
+        this.number = number;
+        this.lines = lines;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public ColumnarBatch<InvoiceLine> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,26 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.TextStorage;
+
+public class Comment {
+
+    @ReportKey(textStorage = TextStorage.INLINE)
+    private String text;
+
+    @ReportKey
+    private String author;
+
+    public Comment(String text, String author) {
+        this.text = text;
+        this.author = author;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+}
@@ -155,4 +155,28 @@ public class DataSet {
     public void setMinValueLong(long minValueLong) {
         this.minValueLong = minValueLong;
     }
+
+    public String getText() {
+        return text;
+    }
+
+    public double getDoubleNumber() {
+        return doubleNumber;
+    }
+
+    public int getIntNumber() {
+        return intNumber;
+    }
+
+    public long getLongNumber() {
+        return longNumber;
+    }
+
+    public long getDefaultDate() {
+        return defaultDate;
+    }
+
+    public List<DataRow> getDataRows() {
+        return dataRows;
+    }
 }
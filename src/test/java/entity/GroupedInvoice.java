@@ -0,0 +1,28 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.KeyType;
+
+import java.util.Iterator;
+
+public class GroupedInvoice {
+
+    @ReportKey
+    private String number;
+
+    @ReportKey(name = "complex_groups", keyType = KeyType.COMPLEX, groupBy = "key_InvoiceLine_category")
+    private Iterator<InvoiceLine> lines;
+
+    public GroupedInvoice(String number, Iterator<InvoiceLine> lines) {
+        this.number = number;
+        this.lines = lines;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public Iterator<InvoiceLine> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,31 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.KeyType;
+
+import java.util.List;
+
+public class Invoice {
+
+    @ReportKey
+    private String number;
+
+    @ReportKey(keyType = KeyType.COMPLEX)
+    private List<InvoiceLine> lines;
+
+    public Invoice() {
+    }
+
+    public Invoice(String number, List<InvoiceLine> lines) {
+        this.number = number;
+        this.lines = lines;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public List<InvoiceLine> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,50 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.Aggregate;
+import enums.DataType;
+
+public class InvoiceLine {
+
+    @ReportKey(aggregates = Aggregate.COUNT)
+    private String name;
+
+    @ReportKey(type = DataType.NUMERIC, aggregates = {Aggregate.SUM, Aggregate.AVG, Aggregate.MIN, Aggregate.MAX})
+    private double amount;
+
+    @ReportKey(type = DataType.DATE, aggregates = Aggregate.MAX)
+    private long date;
+
+    @ReportKey
+    private String category;
+
+    public InvoiceLine() {
+    }
+
+    public InvoiceLine(String name, double amount, long date) {
+        this(name, amount, date, null);
+    }
+
+    public InvoiceLine(String name, double amount, long date, String category) {
+        this.name = name;
+        this.amount = amount;
+        this.date = date;
+        this.category = category;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+}
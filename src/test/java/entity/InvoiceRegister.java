@@ -0,0 +1,20 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.KeyType;
+
+import java.util.List;
+
+public class InvoiceRegister {
+
+    @ReportKey(name = "complex_invoices", keyType = KeyType.COMPLEX)
+    private List<Invoice> invoices;
+
+    public InvoiceRegister(List<Invoice> invoices) {
+        this.invoices = invoices;
+    }
+
+    public List<Invoice> getInvoices() {
+        return invoices;
+    }
+}
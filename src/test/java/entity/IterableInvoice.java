@@ -0,0 +1,26 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.KeyType;
+
+public class IterableInvoice {
+
+    @ReportKey
+    private String number;
+
+    @ReportKey(name = "complex_groups", keyType = KeyType.COMPLEX, groupBy = "key_InvoiceLine_category")
+    private Iterable<InvoiceLine> lines;
+
+    public IterableInvoice(String number, Iterable<InvoiceLine> lines) {
+        this.number = number;
+        this.lines = lines;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public Iterable<InvoiceLine> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,29 @@
+package entity;
+
+import annotation.ReportKey;
+import enums.Direction;
+import enums.KeyType;
+
+import java.util.List;
+
+public class MatrixInvoice {
+
+    @ReportKey
+    private String number;
+
+    @ReportKey(name = "complex_columns", keyType = KeyType.COMPLEX, direction = Direction.RIGHT)
+    private List<InvoiceLine> lines;
+
+    public MatrixInvoice(String number, List<InvoiceLine> lines) {
+        this.number = number;
+        this.lines = lines;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public List<InvoiceLine> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,145 @@
+package model;
+
+import exception.ReportCancelledException;
+import exception.ReportKeyException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+
+    private File file;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+    }
+
+    @After
+    public void after() throws IOException {
+        if (Files.exists(file.toPath())) Files.delete(file.toPath());
+    }
+
+    @Test
+    public void admitWithinBudgetTest() throws Exception {
+        AdmissionController controller = new AdmissionController(100);
+        controller.acquire(40, new RenderContext());
+        controller.acquire(60, new RenderContext());
+        assertEquals(100, controller.getUsedBytes());
+    }
+
+    @Test
+    public void waitForReleaseTest() throws Exception {
+        AdmissionController controller = new AdmissionController(100);
+        controller.acquire(80, new RenderContext());
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                controller.acquire(40, new RenderContext());
+                admitted.countDown();
+            } catch (InterruptedException | ReportCancelledException ignored) {
+            }
+        });
+        thread.start();
+        assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        controller.release(80);
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        assertEquals(40, controller.getUsedBytes());
+    }
+
+    @Test
+    public void admitOversizedRenderAloneTest() throws Exception {
+        AdmissionController controller = new AdmissionController(100);
+        controller.acquire(500, new RenderContext());
+        assertEquals(500, controller.getUsedBytes());
+        controller.release(500);
+
+        controller.acquire(10, new RenderContext());
+        RenderContext context = new RenderContext();
+        context.cancel();
+        assertThrows(ReportCancelledException.class, () -> controller.acquire(500, context));
+    }
+
+    @Test
+    public void admitInArrivalOrderTest() throws Exception {
+        AdmissionController controller = new AdmissionController(100);
+        controller.acquire(80, new RenderContext());
+        List<Long> admitted = new CopyOnWriteArrayList<>();
+        Thread large = startAcquire(controller, 500, admitted);
+        while (controller.getWaitingCount() < 1) {
+            Thread.sleep(10);
+        }
+        Thread small = startAcquire(controller, 10, admitted);
+        while (controller.getWaitingCount() < 2) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        assertTrue(admitted.isEmpty());
+
+        controller.release(80);
+        large.join(5000);
+        Thread.sleep(200);
+        assertEquals(List.of(500L), admitted);
+        controller.release(500);
+        small.join(5000);
+        assertEquals(List.of(500L, 10L), admitted);
+        assertEquals(0, controller.getWaitingCount());
+    }
+
+    @Test
+    public void leaveQueueOnCancelTest() throws Exception {
+        AdmissionController controller = new AdmissionController(100);
+        controller.acquire(80, new RenderContext());
+        RenderContext context = new RenderContext();
+        context.cancel();
+        assertThrows(ReportCancelledException.class, () -> controller.acquire(500, context));
+        assertEquals(0, controller.getWaitingCount());
+        controller.acquire(20, new RenderContext());
+        assertEquals(100, controller.getUsedBytes());
+    }
+
+    @Test
+    public void estimateMemoryByListSizeTest() throws ReportKeyException {
+        RenderPlanner planner = new RenderPlanner();
+        long small = planner.estimateMemory(new Report(TestDataSets.dataSet(1)), 1000);
+        long large = planner.estimateMemory(new Report(TestDataSets.dataSet(100)), 1000);
+        assertTrue(small >= 1000 * RenderPlanner.TEMPLATE_EXPANSION);
+        assertTrue(large > small);
+    }
+
+    @Test
+    public void createReportWithAdmissionTest() throws Exception {
+        AdmissionController controller = new AdmissionController(1);
+        try (AsyncReportExecutor executor = new AsyncReportExecutor(2, 2, controller, new RenderPlanner())) {
+            executor.submit(new Report(TestDataSets.dataSet(2)), getClass().getResourceAsStream("/template/Template32.xlsx"), file)
+                    .get(30, TimeUnit.SECONDS);
+        }
+        assertTrue(Files.exists(file.toPath()));
+        assertEquals(0, controller.getUsedBytes());
+    }
+
+    private Thread startAcquire(AdmissionController controller, long bytes, List<Long> admitted) {
+        Thread thread = new Thread(() -> {
+            try {
+                controller.acquire(bytes, new RenderContext());
+                admitted.add(bytes);
+            } catch (InterruptedException | ReportCancelledException ignored) {
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
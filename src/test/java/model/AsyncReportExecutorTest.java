@@ -0,0 +1,161 @@
+package model;
+
+import exception.ReportCancelledException;
+import exception.ReportKeyException;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class AsyncReportExecutorTest {
+
+    private File file;
+    private Report report;
+    private AsyncReportExecutor executor;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() throws ReportKeyException {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+        report = new Report(TestDataSets.dataSet("someText1", "someText2"));
+        executor = new AsyncReportExecutor(1, 1);
+    }
+
+    @After
+    public void after() throws IOException {
+        executor.close();
+        if (Files.exists(file.toPath())) Files.delete(file.toPath());
+    }
+
+    @Test
+    public void createReportAsyncTest() throws Exception {
+        File actualFile = executor.submit(report, getTemplate(), file).get(30, TimeUnit.SECONDS);
+        XSSFWorkbook wb = new XSSFWorkbook(actualFile.getPath());
+        String actual = wb.getSheetAt(0).getRow(1).getCell(0).getStringCellValue();
+        wb.close();
+        assertEquals("someText2", actual);
+    }
+
+    @Test
+    public void cancelRenderingTest() {
+        RenderContext context = new RenderContext();
+        context.cancel();
+        CompletableFuture<File> future = executor.submit(report, getTemplate(), file, context);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof ReportCancelledException);
+        assertFalse(Files.exists(file.toPath()));
+    }
+
+    @Test
+    public void cancelFutureTest() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submit(report, new BlockingInputStream(latch), file);
+        RenderContext context = new RenderContext();
+        CompletableFuture<File> future = executor.submit(report, getTemplate(), file, context);
+        future.cancel(true);
+        latch.countDown();
+        assertTrue(context.isCancelled());
+    }
+
+    @Test
+    public void rejectWhenQueueIsFullTest() {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submit(report, new BlockingInputStream(latch), file);
+        executor.submit(report, getTemplate(), file);
+        CompletableFuture<File> future = executor.submit(report, getTemplate(), file);
+        latch.countDown();
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void discardPolicyTest() {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (AsyncReportExecutor discardExecutor = new AsyncReportExecutor(1, 1, new ThreadPoolExecutor.DiscardPolicy())) {
+            discardExecutor.submit(report, new BlockingInputStream(latch), file);
+            discardExecutor.submit(report, new BlockingInputStream(latch), file);
+            CompletableFuture<File> future = discardExecutor.submit(report, getTemplate(), file);
+            latch.countDown();
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void discardOldestPolicyTest() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (AsyncReportExecutor discardExecutor = new AsyncReportExecutor(1, 1, new ThreadPoolExecutor.DiscardOldestPolicy())) {
+            discardExecutor.submit(report, new BlockingInputStream(latch), file);
+            CompletableFuture<File> oldest = discardExecutor.submit(report, getTemplate(), file);
+            CompletableFuture<File> future = discardExecutor.submit(report, getTemplate(), file);
+            latch.countDown();
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> oldest.get(30, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof RejectedExecutionException);
+            assertEquals(file, future.get(30, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void closeWithQueuedTaskTest() {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submit(report, new BlockingInputStream(latch), file);
+        CompletableFuture<File> future = executor.submit(report, getTemplate(), file);
+        executor.close();
+        latch.countDown();
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void completeWithErrorTest() {
+        InputStream template = new InputStream() {
+            @Override
+            public int read() {
+                throw new NoClassDefFoundError("com/fasterxml/jackson/databind/JsonNode");
+            }
+        };
+        CompletableFuture<File> future = executor.submit(report, template, file);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof NoClassDefFoundError);
+    }
+
+    @Test
+    public void cancelSynchronousRenderingTest() {
+        RenderContext context = new RenderContext();
+        context.cancel();
+        assertThrows(ReportCancelledException.class, () -> report.createReport(getTemplate(), file, context));
+    }
+
+    private InputStream getTemplate() {
+        return getClass().getResourceAsStream("/template/Template32.xlsx");
+    }
+
+    private static class BlockingInputStream extends InputStream {
+
+        private final CountDownLatch latch;
+
+        BlockingInputStream(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("The stream is closed");
+        }
+    }
+}
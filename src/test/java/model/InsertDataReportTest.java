@@ -1,25 +1,45 @@
 package model;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import entity.ColumnarInvoice;
+import entity.Comment;
 import entity.Data;
 import entity.DataRow;
 import entity.DataSet;
+import entity.GroupedInvoice;
+import entity.Invoice;
+import entity.InvoiceLine;
+import entity.InvoiceRegister;
+import entity.MatrixInvoice;
+import enums.TextStorage;
 import exception.IncorrectTemplateException;
+import exception.ReportCancelledException;
 import exception.ReportKeyException;
 import org.apache.poi.ss.usermodel.Picture;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.usermodel.*;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class InsertDataReportTest {
 
@@ -338,6 +358,471 @@ public class InsertDataReportTest {
         wb.close();
     }
 
+    @Test
+    public void insertInlineTextTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template1.xlsx");
+        report.setTextStorage(TextStorage.INLINE);
+        report.createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFCell cell = wb.getSheetAt(0).getRow(0).getCell(0);
+        assertEquals(STCellType.INLINE_STR, cell.getCTCell().getT());
+        assertEquals("SomeText", cell.getStringCellValue());
+        assertEquals(0, wb.getSharedStringSource().getSharedStringItems().stream()
+                .filter(item -> item.getString().equals("SomeText")).count());
+        wb.close();
+    }
+
+    @Test
+    public void insertInlineTextByKeyTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template48.xlsx");
+        new Report(new Comment("someComment", "someAuthor")).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFRow row = wb.getSheetAt(0).getRow(0);
+        assertEquals(STCellType.INLINE_STR, row.getCell(0).getCTCell().getT());
+        assertEquals("someComment", row.getCell(0).getStringCellValue());
+        assertEquals(STCellType.S, row.getCell(1).getCTCell().getT());
+        assertEquals("someAuthor", row.getCell(1).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertTextByCardinalityTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<DataRow> dataRows = new ArrayList<>();
+        for (int i = 1; i <= TextCardinality.MIN_SAMPLE_SIZE + 10; i++) {
+            dataRows.add(new DataRow("someText" + i, null, new ArrayList<>()));
+        }
+        DataSet dataSet = new DataSet();
+        dataSet.setDataRows(dataRows);
+        Report report = new Report(dataSet);
+        report.setTextStorage(TextStorage.AUTO);
+        template = getClass().getResourceAsStream("/template/Template32.xlsx");
+        report.createReport(template, file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals(STCellType.S, sheet.getRow(0).getCell(0).getCTCell().getT());
+        XSSFCell lastCell = sheet.getRow(dataRows.size() - 1).getCell(0);
+        assertEquals(STCellType.INLINE_STR, lastCell.getCTCell().getT());
+        assertEquals("someText" + dataRows.size(), lastCell.getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertRepeatedTextByCardinalityTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<DataRow> dataRows = new ArrayList<>();
+        for (int i = 1; i <= TextCardinality.MIN_SAMPLE_SIZE + 10; i++) {
+            dataRows.add(new DataRow("someText" + i % 3, null, new ArrayList<>()));
+        }
+        DataSet dataSet = new DataSet();
+        dataSet.setDataRows(dataRows);
+        Report report = new Report(dataSet);
+        report.setTextStorage(TextStorage.AUTO);
+        template = getClass().getResourceAsStream("/template/Template32.xlsx");
+        report.createReport(template, file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(STCellType.S, wb.getSheetAt(0).getRow(dataRows.size() - 1).getCell(0).getCTCell().getT());
+        wb.close();
+    }
+
+    @Test
+    public void insertTextTemplateTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template50.xlsx");
+        report.createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("Invoice #10 of 15.02.2022", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("1. someText1", sheet.getRow(1).getCell(0).getStringCellValue());
+        assertEquals("someText1", sheet.getRow(1).getCell(1).getStringCellValue());
+        assertEquals("2. someText2", sheet.getRow(2).getCell(0).getStringCellValue());
+        assertEquals("Total: 10.5 ${unknown} ${complex_DataSet_dataRows}", sheet.getRow(3).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    //Форматы дат ключей создаются один раз при разборе текста и дают тот же текст, что и SimpleDateFormat
+    @Test
+    public void insertDateTextTemplateTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        String[] keys = {"defaultDate", "negativeLong", "minValueLong", "anotherFormatDate", "defaultTime", "anotherFormatTime"};
+        String[] patterns = {"dd.MM.yyyy", "dd.MM.yyyy", "dd.MM.yyyy", "yyyy-MM-dd", "HH:mm:ss", "h:mm:ss aaa"};
+        long[] values = {1644924015000L, -2209000820000L, Long.MIN_VALUE, 1644924015000L, 1644924015000L, 1644924015000L};
+        XSSFWorkbook templateWb = new XSSFWorkbook();
+        XSSFSheet templateSheet = templateWb.createSheet();
+        for (int i = 0; i < keys.length; i++) {
+            templateSheet.createRow(i).createCell(0).setCellValue("At ${key_DataSet_" + keys[i] + "}.");
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        templateWb.write(output);
+        templateWb.close();
+        report.createReport(new ByteArrayInputStream(output.toByteArray()), file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        for (int i = 0; i < keys.length; i++) {
+            String expected = "At " + new SimpleDateFormat(patterns[i]).format(new Date(values[i])) + ".";
+            assertEquals(keys[i], expected, sheet.getRow(i).getCell(0).getStringCellValue());
+        }
+        wb.close();
+    }
+
+    @Test
+    public void insertInlineTextTemplateTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template50.xlsx");
+        report.setTextStorage(TextStorage.INLINE);
+        report.createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFCell cell = wb.getSheetAt(0).getRow(2).getCell(0);
+        assertEquals(STCellType.INLINE_STR, cell.getCTCell().getT());
+        assertEquals("2. someText2", cell.getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertAggregateTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template51.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        lines.add(new InvoiceLine("a", 10, 1644924015000L));
+        lines.add(new InvoiceLine("b", 5.5, 1645010415000L));
+        lines.add(new InvoiceLine("c", 20, 1644837615000L));
+        new Report(new Invoice("1", lines)).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFRow row = wb.getSheetAt(0).getRow(4);
+        assertEquals("Total", row.getCell(0).getStringCellValue());
+        assertEquals(35.5, row.getCell(1).getNumericCellValue(), 0);
+        assertEquals(3, row.getCell(2).getNumericCellValue(), 0);
+        assertEquals(35.5 / 3, row.getCell(3).getNumericCellValue(), 1e-9);
+        assertEquals(5.5, row.getCell(4).getNumericCellValue(), 0);
+        assertEquals(20, row.getCell(5).getNumericCellValue(), 0);
+        assertEquals("16.02.2022", row.getCell(6).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertEmptyAggregateTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template51.xlsx");
+        new Report(new Invoice("1", new ArrayList<>())).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFRow row = wb.getSheetAt(0).getRow(2);
+        assertEquals(0, row.getCell(1).getNumericCellValue(), 0);
+        assertEquals(0, row.getCell(2).getNumericCellValue(), 0);
+        assertEquals("", row.getCell(3).getStringCellValue());
+        assertEquals("", row.getCell(6).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertAggregateByPartitionsTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template51.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 2 * Report.MIN_PARTITION_SIZE; i++) {
+            lines.add(new InvoiceLine("line" + i, i, 1644924015000L));
+        }
+        Report report = new Report(new Invoice("1", lines));
+        report.setParallelism(2);
+        report.createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFRow row = wb.getSheetAt(0).getRow(lines.size() + 1);
+        assertEquals(lines.size() * (lines.size() + 1) / 2.0, row.getCell(1).getNumericCellValue(), 0);
+        assertEquals(lines.size(), row.getCell(2).getNumericCellValue(), 0);
+        assertEquals(1, row.getCell(4).getNumericCellValue(), 0);
+        assertEquals(lines.size(), row.getCell(5).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    @Test
+    public void insertNestedAggregateByPartitionsTest() throws IOException, IncorrectTemplateException, ReportKeyException, ReportCancelledException {
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 1; i <= 2 * Report.MIN_PARTITION_SIZE; i++) {
+            invoices.add(new Invoice("n" + i, List.of(new InvoiceLine("line" + i, i, 1644924015000L))));
+        }
+        RenderContext context = new RenderContext();
+        for (int parallelism = 1; parallelism <= 2; parallelism++) {
+            Report report = new Report(new InvoiceRegister(invoices));
+            report.setParallelism(parallelism);
+            report.createReport(getClass().getResourceAsStream("/template/Template58.xlsx"), file, context);
+            XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals("", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(invoices.size(), sheet.getRow(2 * invoices.size() + 1).getCell(1).getNumericCellValue(), 0);
+            wb.close();
+        }
+    }
+
+    @Test
+    public void insertGroupedListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template52.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        lines.add(new InvoiceLine("a", 10, 1644924015000L, "A"));
+        lines.add(new InvoiceLine("b", 5, 1644924015000L, "A"));
+        lines.add(new InvoiceLine("c", 20, 1644924015000L, "B"));
+        new Report(new GroupedInvoice("1", lines.iterator())).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(1, wb.getNumberOfSheets());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("Group 1: A", sheet.getRow(1).getCell(0).getStringCellValue());
+        assertEquals(1, sheet.getRow(2).getCell(0).getNumericCellValue(), 0);
+        assertEquals("a", sheet.getRow(2).getCell(1).getStringCellValue());
+        assertEquals(2, sheet.getRow(3).getCell(0).getNumericCellValue(), 0);
+        assertEquals("A", sheet.getRow(4).getCell(1).getStringCellValue());
+        assertEquals(15, sheet.getRow(4).getCell(2).getNumericCellValue(), 0);
+        assertEquals(2, sheet.getRow(4).getCell(3).getNumericCellValue(), 0);
+        assertEquals("Group 2: B", sheet.getRow(5).getCell(0).getStringCellValue());
+        assertEquals(3, sheet.getRow(6).getCell(0).getNumericCellValue(), 0);
+        assertEquals(20, sheet.getRow(6).getCell(2).getNumericCellValue(), 0);
+        assertEquals("Subtotal", sheet.getRow(7).getCell(0).getStringCellValue());
+        assertEquals(20, sheet.getRow(7).getCell(2).getNumericCellValue(), 0);
+        assertEquals(1, sheet.getRow(7).getCell(3).getNumericCellValue(), 0);
+        assertEquals("Total", sheet.getRow(8).getCell(0).getStringCellValue());
+        assertEquals(35, sheet.getRow(8).getCell(1).getNumericCellValue(), 0);
+        assertEquals(3, sheet.getRow(8).getCell(2).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    @Test
+    public void insertEmptyGroupedListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template52.xlsx");
+        new Report(new GroupedInvoice("1", Collections.emptyIterator())).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("", sheet.getRow(1).getCell(0).getStringCellValue());
+        assertEquals("Total", sheet.getRow(2).getCell(0).getStringCellValue());
+        assertEquals(0, sheet.getRow(2).getCell(1).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    @Test
+    public void insertFormulaTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template53.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            lines.add(new InvoiceLine("line" + i, i, 1644924015000L));
+        }
+        new Report(new Invoice("1", lines)).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheet("Sheet1");
+        assertEquals("C2*2", sheet.getRow(1).getCell(4).getCellFormula());
+        assertEquals("C4*2", sheet.getRow(3).getCell(4).getCellFormula());
+        assertEquals("SUM(C2:C4)", sheet.getRow(4).getCell(1).getCellFormula());
+        assertEquals("B5*2", sheet.getRow(4).getCell(2).getCellFormula());
+        assertEquals("Sheet1!B5", wb.getSheet("Summary").getRow(0).getCell(0).getCellFormula());
+        assertEquals("Sheet1!$C$2:$C$4", wb.getName("Amounts").getRefersToFormula());
+        XSSFFormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+        assertEquals(12, evaluator.evaluate(sheet.getRow(4).getCell(2)).getNumberValue(), 0);
+        assertEquals(6, evaluator.evaluate(wb.getSheet("Summary").getRow(1).getCell(0)).getNumberValue(), 0);
+        assertEquals(6, evaluator.evaluate(sheet.getRow(3).getCell(4)).getNumberValue(), 0);
+        wb.close();
+    }
+
+    @Test
+    public void insertFormulaWithEmptyListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template53.xlsx");
+        new Report(new Invoice("1", new ArrayList<>())).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheet("Sheet1");
+        assertEquals("SUM(C2:C2)", sheet.getRow(2).getCell(1).getCellFormula());
+        assertEquals("Sheet1!B3", wb.getSheet("Summary").getRow(0).getCell(0).getCellFormula());
+        assertEquals("Sheet1!$C$2:$C$2", wb.getName("Amounts").getRefersToFormula());
+        wb.close();
+    }
+
+    @Test
+    public void insertBlockRulesTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template54.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            lines.add(new InvoiceLine("line" + i, i, 1644924015000L));
+        }
+        new Report(new Invoice("1", lines)).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals(1, wb.getNumberOfSheets());
+        XSSFSheetConditionalFormatting formatting = sheet.getSheetConditionalFormatting();
+        assertEquals(1, formatting.getNumConditionalFormattings());
+        assertEquals("A2:D6", formatting.getConditionalFormattingAt(0).getFormattingRanges()[0].formatAsString());
+        assertEquals("$C2>2", formatting.getConditionalFormattingAt(0).getRule(0).getFormula1());
+        assertEquals(1, sheet.getDataValidations().size());
+        assertEquals("B2:B6", sheet.getDataValidations().get(0).getRegions().getCellRangeAddress(0).formatAsString());
+        assertEquals("End", sheet.getRow(6).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertBlockPrototypeTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template55.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            lines.add(new InvoiceLine("line" + i, i, 1644924015000L));
+        }
+        new Report(new Invoice("1", lines)).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals(1, wb.getNumberOfSheets());
+        for (int i = 0; i < 3; i++) {
+            XSSFRow row = sheet.getRow(1 + i * 2);
+            assertEquals(i + 1, row.getCell(0).getNumericCellValue(), 0);
+            assertEquals("line" + (i + 1), row.getCell(1).getStringCellValue());
+            assertTrue(wb.getFontAt(row.getCell(1).getCellStyle().getFontIndex()).getBold());
+            assertEquals("Amount:", row.getCell(2).getStringCellValue());
+            assertEquals(i + 1, row.getCell(3).getNumericCellValue(), 0);
+            XSSFRow note = sheet.getRow(2 + i * 2);
+            assertEquals("Line line" + (i + 1), note.getCell(0).getStringCellValue());
+            assertEquals(30, note.getHeightInPoints(), 0);
+            assertEquals("B" + (2 + i * 2), row.getCell(1).getReference());
+        }
+        assertEquals(3, sheet.getNumMergedRegions());
+        assertEquals("A3:D3", sheet.getMergedRegion(0).formatAsString());
+        assertEquals("A7:D7", sheet.getMergedRegion(2).formatAsString());
+        assertEquals("End", sheet.getRow(7).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertHorizontalListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template56.xlsx");
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            lines.add(new InvoiceLine("line" + i, i, 1644924015000L));
+        }
+        new Report(new MatrixInvoice("7", lines)).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals(1, wb.getNumberOfSheets());
+        assertEquals("Line", sheet.getRow(0).getCell(0).getStringCellValue());
+        for (int i = 0; i < 3; i++) {
+            int column = 1 + i * 3;
+            assertEquals("line" + (i + 1), sheet.getRow(0).getCell(column).getStringCellValue());
+            assertEquals(i + 1, sheet.getRow(0).getCell(column + 2).getNumericCellValue(), 0);
+            assertEquals(i + 1, sheet.getRow(1).getCell(column).getNumericCellValue(), 0);
+            assertEquals(new CellReference(1, column).formatAsString() + "*2", sheet.getRow(1).getCell(column + 1).getCellFormula());
+            assertEquals(4000, sheet.getColumnWidth(column));
+            assertEquals(new CellRangeAddress(0, 0, column, column + 1).formatAsString(), sheet.getMergedRegion(i).formatAsString());
+        }
+        assertEquals("End", sheet.getRow(0).getCell(10).getStringCellValue());
+        assertEquals(6000, sheet.getColumnWidth(10));
+        assertEquals("Number", sheet.getRow(2).getCell(0).getStringCellValue());
+        assertEquals("7", sheet.getRow(2).getCell(1).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertColumnarListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template57.xlsx");
+        ColumnarBatch<InvoiceLine> lines = new ColumnarBatch<>(InvoiceLine.class, 3)
+                .column("key_InvoiceLine_name", new String[]{"a", "b", "c"})
+                .column("key_InvoiceLine_amount", new double[]{10, 5.5, 20})
+                .column("key_InvoiceLine_date", new long[]{1644924015000L, 1645010415000L, 1644837615000L});
+        new Report(new ColumnarInvoice("1", lines)).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("1", sheet.getRow(0).getCell(0).getStringCellValue());
+        XSSFRow row = sheet.getRow(2);
+        assertEquals(2, row.getCell(0).getNumericCellValue(), 0);
+        assertEquals("b", row.getCell(1).getStringCellValue());
+        assertEquals(5.5, row.getCell(2).getNumericCellValue(), 0);
+        assertEquals(1645010415000L, row.getCell(3).getDateCellValue().getTime());
+        assertEquals("Line b", row.getCell(4).getStringCellValue());
+        XSSFRow total = sheet.getRow(4);
+        assertEquals("Total", total.getCell(0).getStringCellValue());
+        assertEquals(3, total.getCell(1).getNumericCellValue(), 0);
+        assertEquals(35.5, total.getCell(2).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnarBatchSizeTest() {
+        new ColumnarBatch<>(InvoiceLine.class, 2).column("key_InvoiceLine_amount", new double[]{1});
+    }
+
+    @Test
+    public void insertMapDataTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template51.xlsx");
+        List<Map<String, Object>> lines = new ArrayList<>();
+        lines.add(Map.of("name", "a", "amount", 10, "date", 1644924015000L));
+        lines.add(Map.of("name", "b", "amount", 5.5, "date", 1645010415000L));
+        lines.add(Map.of("name", "c", "amount", 20));
+        new Report(Map.of("number", "1", "lines", lines), Invoice.class, DataBinding.map()).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("1", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("b", sheet.getRow(2).getCell(1).getStringCellValue());
+        assertEquals("", sheet.getRow(3).getCell(3).getStringCellValue());
+        XSSFRow row = sheet.getRow(4);
+        assertEquals(35.5, row.getCell(1).getNumericCellValue(), 0);
+        assertEquals(3, row.getCell(2).getNumericCellValue(), 0);
+        assertEquals("16.02.2022", row.getCell(6).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertJsonDataTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template51.xlsx");
+        JsonNode data = new ObjectMapper().readTree("{\"number\": \"1\", \"lines\": ["
+                + "{\"name\": \"a\", \"amount\": 10, \"date\": 1644924015000},"
+                + "{\"name\": \"b\", \"amount\": 5.5, \"date\": 1645010415000}]}");
+        new Report(data, Invoice.class, new JsonNodeBinding()).createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("1", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("a", sheet.getRow(1).getCell(1).getStringCellValue());
+        assertEquals(5.5, sheet.getRow(2).getCell(2).getNumericCellValue(), 0);
+        assertEquals(15.5, sheet.getRow(3).getCell(1).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    @Test
+    public void insertStreamedJsonDataTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template32.xlsx");
+        try (JsonStreamSource source = new JsonStreamSource(new File("src/test/resources/data/DataSet.json"))) {
+            new Report(source.getRoot(), DataSet.class, source).createReport(template, file);
+        }
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals("someText1", wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        assertEquals("someText2", wb.getSheetAt(0).getRow(1).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void insertStreamedJsonWithPropertyAfterListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template51.xlsx");
+        String json = "{\"lines\": [{\"name\": \"a\", \"amount\": 10, \"date\": 1644924015000},"
+                + "{\"name\": \"b\", \"amount\": 5.5, \"date\": 1645010415000}], \"number\": \"1\"}";
+        try (JsonStreamSource source = new JsonStreamSource(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            new Report(source.getRoot(), Invoice.class, source).createReport(template, file);
+        }
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("1", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("a", sheet.getRow(1).getCell(1).getStringCellValue());
+        assertEquals(2, sheet.getRow(2).getCell(0).getNumericCellValue(), 0);
+        assertEquals(15.5, sheet.getRow(3).getCell(1).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    @Test
+    public void insertStreamedJsonWithCacheTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        template = getClass().getResourceAsStream("/template/Template32.xlsx");
+        MemoryReportCache cache = new MemoryReportCache(10_000_000);
+        try (JsonStreamSource source = new JsonStreamSource(new File("src/test/resources/data/DataSet.json"))) {
+            Report report = new Report(source.getRoot(), DataSet.class, source);
+            assertEquals(-1, report.countDataCells());
+            assertEquals(Long.MAX_VALUE, new RenderPlanner().estimateMemory(report, 1000));
+            report.createReport(template, file, cache);
+        }
+        assertEquals(0, cache.getSize());
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals("someText2", wb.getSheetAt(0).getRow(1).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readStreamedJsonArrayTwiceTest() throws IOException {
+        String json = "{\"lines\": [{\"name\": \"a\"}], \"number\": \"1\"}";
+        try (JsonStreamSource source = new JsonStreamSource(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            Object lines = source.get(source.getRoot(), "lines");
+            source.getIterator(lines).forEachRemaining(line -> {});
+            source.getIterator(lines).hasNext();
+        }
+    }
+
     private DataSet createDataSet() {
         List<Data> dataList = new ArrayList<>();
         dataList.add(new Data("Data1"));
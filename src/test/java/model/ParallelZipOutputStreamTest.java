@@ -0,0 +1,178 @@
+package model;
+
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class ParallelZipOutputStreamTest {
+
+    private File file;
+    private File sequentialFile;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+        sequentialFile = new File(TEMP + "/sequential.xlsx");
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(sequentialFile.toPath());
+    }
+
+    @Test
+    public void keepPartOrderTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        Report report = new Report(TestDataSets.filledDataSet("someText1"));
+        report.createReport(getClass().getResourceAsStream("/template/Template6.xlsx"), sequentialFile);
+        report.setParallelism(4);
+        report.createReport(getClass().getResourceAsStream("/template/Template6.xlsx"), file);
+
+        assertEquals(getEntryNames(sequentialFile), getEntryNames(file));
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("xl/workbook.xml").getMethod());
+        }
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(1, wb.getAllPictures().size());
+        wb.close();
+    }
+
+    @Test
+    public void storeImagesTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        Report report = new Report(TestDataSets.filledDataSet("someText1"));
+        report.setStoreImages(true);
+        report.createReport(getClass().getResourceAsStream("/template/Template6.xlsx"), file);
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                int method = entry.getName().startsWith("xl/media/") ? ZipEntry.STORED : ZipEntry.DEFLATED;
+                assertEquals(entry.getName(), method, entry.getMethod());
+            }
+        }
+    }
+
+    @Test
+    public void compressionLevelTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        Report report = new Report(TestDataSets.filledDataSet("someText1"));
+        report.setCompressionLevel(0);
+        report.createReport(getClass().getResourceAsStream("/template/Template1.xlsx"), sequentialFile);
+        report.setCompressionLevel(9);
+        report.createReport(getClass().getResourceAsStream("/template/Template1.xlsx"), file);
+
+        assertTrue(sequentialFile.length() > file.length());
+        XSSFWorkbook wb = new XSSFWorkbook(sequentialFile.getPath());
+        assertEquals("SomeText", wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void setIncorrectLevelTest() {
+        ParallelZipOutputStream output = new ParallelZipOutputStream(new ByteArrayOutputStream(), 1);
+        assertThrows(IllegalArgumentException.class, () -> output.setLevel(10));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelZipOutputStream(new ByteArrayOutputStream(), 0));
+    }
+
+    //Часть больше порога сжимается потоком и пишется после всех предыдущих частей
+    @Test
+    public void streamLargePartTest() throws IOException {
+        byte[] large = new byte[1000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + i % 26);
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (ParallelZipOutputStream output = new ParallelZipOutputStream(result, 2, 100)) {
+            for (String name : List.of("first.xml", "large.xml", "last.xml")) {
+                output.putArchiveEntry(new ZipArchiveEntry(name));
+                byte[] data = name.equals("large.xml") ? large : name.getBytes();
+                for (int offset = 0; offset < data.length; offset += 30) {
+                    output.write(data, offset, Math.min(30, data.length - offset));
+                }
+                output.closeArchiveEntry();
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(result.toByteArray()))) {
+            for (ZipEntry entry = input.getNextEntry(); entry != null; entry = input.getNextEntry()) {
+                names.add(entry.getName());
+                byte[] data = input.readAllBytes();
+                assertArrayEquals(entry.getName(), entry.getName().equals("large.xml") ? large : entry.getName().getBytes(), data);
+                assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            }
+        }
+        assertEquals(List.of("first.xml", "large.xml", "last.xml"), names);
+    }
+
+    //После сбоя записи ZipArchiveOutputStream сам закрывает свою открытую запись, ошибка не подменяется
+    @Test
+    public void keepWriteFailureTest() throws IOException {
+        try (ParallelZipOutputStream output = new ParallelZipOutputStream(createFailingStream(), 1)) {
+            for (String name : Arrays.asList("first.xml", "second.xml")) {
+                output.putArchiveEntry(new ZipArchiveEntry(name));
+                output.write(name.getBytes());
+                IOException exception = assertThrows(IOException.class, output::closeArchiveEntry);
+                assertEquals("No space left on device", exception.getMessage());
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void stopThreadsAfterFailedWriteTest() throws IOException, InterruptedException {
+        OutputStream failing = createFailingStream();
+        XSSFWorkbook wb = new XSSFWorkbook();
+        wb.createSheet("Sheet1");
+        try (ParallelZipOutputStream output = new ParallelZipOutputStream(failing, 2)) {
+            wb.write(output);
+            fail();
+        } catch (IOException | RuntimeException ignored) {
+        }
+        wb.close();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("report-zip-")) thread.join(5000);
+            assertFalse(thread.getName().startsWith("report-zip-") && thread.isAlive());
+        }
+    }
+
+    private OutputStream createFailingStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("No space left on device");
+            }
+        };
+    }
+
+    private List<String> getEntryNames(File file) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,127 @@
+package model;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.*;
+import org.junit.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PartitionWorkbookTest {
+
+    @Test
+    public void copyBlockSheetsTest() throws IOException {
+        XSSFWorkbook source = createSource();
+        try (PartitionWorkbook partition = new PartitionWorkbook(source, List.of("block"))) {
+            XSSFWorkbook wb = partition.getWorkbook();
+            assertEquals(source.getNumCellStyles(), wb.getNumCellStyles());
+            assertEquals("dd.mm.yyyy", wb.getCellStyleAt(1).getDataFormatString());
+            XSSFSheet block = wb.getSheet("block");
+            assertEquals("name", block.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(1, block.getRow(0).getCell(1).getCellStyle().getIndex());
+            assertEquals(List.of(new CellRangeAddress(0, 0, 2, 3)), block.getMergedRegions());
+            assertNull(wb.getSheet("dest"));
+        }
+        source.close();
+    }
+
+    @Test
+    public void attachRowsTest() throws IOException, ReflectiveOperationException {
+        XSSFWorkbook source = createSource();
+        XSSFSheet destination = source.getSheet("dest");
+        XSSFCell bottom = destination.getRow(2).getCell(0);
+        try (PartitionWorkbook partition = new PartitionWorkbook(source, List.of("block"))) {
+            XSSFSheet fragment = partition.getFragment();
+            fragment.createRow(0).createCell(0).setCellValue("top");
+            fragment.getRow(0).createCell(1).setCellValue(1.5);
+            fragment.createRow(1).createCell(0).setCellValue("a");
+            fragment.addMergedRegionUnsafe(new CellRangeAddress(1, 1, 0, 1));
+            partition.collectStrings();
+
+            List<CTRow> rows = partition.createRows(2, partition.mapStrings(source.getSharedStringSource()));
+            destination.shiftRows(2, 2, partition.getRowCount());
+            PartitionWorkbook.attachRows(destination, rows);
+            assertEquals(List.of(new CellRangeAddress(3, 3, 0, 1)), partition.getMergedRegions(2));
+        }
+
+        assertEquals("bottom", bottom.getStringCellValue());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        source.write(output);
+        source.close();
+        XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()));
+        XSSFSheet sheet = wb.getSheet("dest");
+        assertEquals("top", sheet.getRow(2).getCell(0).getStringCellValue());
+        assertEquals(1.5, sheet.getRow(2).getCell(1).getNumericCellValue(), 0);
+        assertEquals("a", sheet.getRow(3).getCell(0).getStringCellValue());
+        assertEquals("bottom", sheet.getRow(4).getCell(0).getStringCellValue());
+        assertEquals(4, sheet.getLastRowNum());
+        assertEquals(5, wb.getSharedStringSource().getUniqueCount());
+        wb.close();
+    }
+
+    //Основной поток только переносит общие строки и подключает готовые строки, это дешевле заполнения диапазона
+    @Test
+    public void attachRowsTimeTest() throws IOException, ReflectiveOperationException {
+        long fillTime = Long.MAX_VALUE;
+        long attachTime = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            XSSFWorkbook source = createSource();
+            XSSFSheet destination = source.getSheet("dest");
+            try (PartitionWorkbook partition = new PartitionWorkbook(source, List.of("block"))) {
+                long start = System.nanoTime();
+                fillFragment(partition.getFragment(), 10000);
+                partition.collectStrings();
+                fillTime = Math.min(fillTime, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                int[] strings = partition.mapStrings(source.getSharedStringSource());
+                long mapTime = System.nanoTime() - start;
+                List<CTRow> rows = partition.createRows(2, strings);
+                destination.shiftRows(2, 2, partition.getRowCount());
+                start = System.nanoTime();
+                PartitionWorkbook.attachRows(destination, rows);
+                attachTime = Math.min(attachTime, mapTime + System.nanoTime() - start);
+            }
+            assertEquals("v9999_1", destination.getRow(10001).getCell(1).getStringCellValue());
+            assertEquals("bottom", destination.getRow(10002).getCell(0).getStringCellValue());
+            source.close();
+        }
+        assertTrue("attach " + attachTime / 1_000_000 + " ms, fill " + fillTime / 1_000_000 + " ms", attachTime < fillTime);
+    }
+
+    private XSSFWorkbook createSource() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFCellStyle dateStyle = wb.createCellStyle();
+        dateStyle.setDataFormat(wb.createDataFormat().getFormat("dd.mm.yyyy"));
+        XSSFSheet destination = wb.createSheet("dest");
+        destination.createRow(0).createCell(0).setCellValue("top");
+        destination.createRow(1).createCell(0).setCellValue("block");
+        destination.createRow(2).createCell(0).setCellValue("bottom");
+        XSSFSheet block = wb.createSheet("block");
+        XSSFRow row = block.createRow(0);
+        row.createCell(0).setCellValue("name");
+        row.createCell(1).setCellStyle(dateStyle);
+        block.addMergedRegion(new CellRangeAddress(0, 0, 2, 3));
+        return wb;
+    }
+
+    private void fillFragment(XSSFSheet fragment, int rows) {
+        for (int i = 0; i < rows; i++) {
+            XSSFRow row = fragment.createRow(i);
+            for (int j = 0; j < 10; j++) {
+                if (j < 2) {
+                    row.createCell(j).setCellValue("v" + i + "_" + j);
+                } else if (j < 5) {
+                    row.createCell(j).setCellValue("type" + i % 10);
+                } else {
+                    row.createCell(j).setCellValue(i * j);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package model;
+
+import entity.Invoice;
+import entity.InvoiceLine;
+import exception.ReportDeadlineException;
+import exception.ReportKeyException;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class RenderContextTest {
+
+    private File file;
+    private Report report;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() throws ReportKeyException {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+        report = new Report(TestDataSets.dataSet("someText1", "someText2"));
+    }
+
+    @After
+    public void after() throws IOException {
+        if (Files.exists(file.toPath())) Files.delete(file.toPath());
+    }
+
+    @Test
+    public void reportProgressTest() throws Exception {
+        List<String> progress = new ArrayList<>();
+        RenderContext context = new RenderContext();
+        context.setProgressListener((key, rows, total) -> progress.add(key + " " + rows + "/" + total));
+        report.createReport(getTemplate(), file, context);
+        assertEquals(List.of("complex_DataSet_dataRows 1/2", "complex_DataSet_dataRows 2/2"), progress);
+    }
+
+    @Test
+    public void abortAfterDeadlineTest() {
+        RenderContext context = new RenderContext(Instant.now().minusSeconds(1), null);
+        Exception exception = assertThrows(ReportDeadlineException.class, () -> report.createReport(getTemplate(), file, context));
+        assertEquals("The report rendering deadline has passed.", exception.getMessage());
+        assertFalse(Files.exists(file.toPath()));
+    }
+
+    @Test
+    public void renderBeforeDeadlineTest() throws Exception {
+        RenderContext context = new RenderContext(Instant.now().plusSeconds(60), null);
+        report.createReport(getTemplate(), file, context);
+        assertTrue(Files.exists(file.toPath()));
+    }
+
+    @Test
+    public void shareContextBetweenRendersTest() throws Exception {
+        File nestedFile = new File(TEMP + "/nested.xlsx");
+        RenderContext context = new RenderContext();
+        AtomicBoolean nested = new AtomicBoolean();
+        //Второе заполнение с тем же контекстом проходит целиком, пока первое еще не закончило список
+        context.setProgressListener((key, rows, total) -> {
+            if (nested.compareAndSet(false, true)) {
+                try {
+                    new Report(createInvoice(1, 2)).createReport(getAggregateTemplate(), nestedFile, context);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        try {
+            new Report(createInvoice(10, 20, 30)).createReport(getAggregateTemplate(), file, context);
+            assertTotal(file, 4, 60);
+            assertTotal(nestedFile, 3, 3);
+        } finally {
+            Files.deleteIfExists(nestedFile.toPath());
+        }
+    }
+
+    private Invoice createInvoice(double... amounts) {
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 0; i < amounts.length; i++) {
+            lines.add(new InvoiceLine("line" + i, amounts[i], 1644924015000L));
+        }
+        return new Invoice("1", lines);
+    }
+
+    private void assertTotal(File file, int row, double total) throws IOException {
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(total, wb.getSheetAt(0).getRow(row).getCell(1).getNumericCellValue(), 0);
+        wb.close();
+    }
+
+    private InputStream getAggregateTemplate() {
+        return getClass().getResourceAsStream("/template/Template51.xlsx");
+    }
+
+    private InputStream getTemplate() {
+        return getClass().getResourceAsStream("/template/Template32.xlsx");
+    }
+}
@@ -0,0 +1,142 @@
+package model;
+
+import entity.InvoiceLine;
+import entity.IterableInvoice;
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ReportCacheTest {
+
+    private File file;
+    private Path cacheDirectory;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+        cacheDirectory = Path.of(TEMP, "cache");
+    }
+
+    @After
+    public void after() throws IOException {
+        if (Files.exists(file.toPath())) Files.delete(file.toPath());
+        if (Files.exists(cacheDirectory)) {
+            try (Stream<Path> paths = Files.walk(cacheDirectory)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void returnCachedReportTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        MemoryReportCache cache = new MemoryReportCache(10_000_000);
+        new Report(TestDataSets.dataSet("someText1", "someText2")).createReport(getTemplate(), file, cache);
+        byte[] expected = Files.readAllBytes(file.toPath());
+        Files.delete(file.toPath());
+        assertTrue(cache.getSize() > 0);
+
+        new Report(TestDataSets.dataSet("someText1", "someText2")).createReport(getTemplate(), file, cache);
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void renderChangedDataTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        MemoryReportCache cache = new MemoryReportCache(10_000_000);
+        new Report(TestDataSets.dataSet("someText1", "someText2")).createReport(getTemplate(), file, cache);
+        new Report(TestDataSets.dataSet("changedText", "someText2")).createReport(getTemplate(), file, cache);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        String actual = wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue();
+        wb.close();
+        assertEquals("changedText", actual);
+    }
+
+    @Test
+    public void renderChangedIterableDataTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        MemoryReportCache cache = new MemoryReportCache(10_000_000);
+        List<InvoiceLine> first = List.of(new InvoiceLine("a", 10, 1644924015000L, "A"));
+        List<InvoiceLine> second = List.of(new InvoiceLine("b", 20, 1644924015000L, "B"));
+        new Report(new IterableInvoice("1", first::iterator)).createReport(getGroupedTemplate(), file, cache);
+        new Report(new IterableInvoice("1", second::iterator)).createReport(getGroupedTemplate(), file, cache);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        String actual = wb.getSheetAt(0).getRow(1).getCell(0).getStringCellValue();
+        wb.close();
+        assertEquals("Group 1: B", actual);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void renderChangedSettingsTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        MemoryReportCache cache = new MemoryReportCache(10_000_000);
+        new Report(TestDataSets.dataSet("someText1", "someText2")).createReport(getTemplate(), file, cache);
+        Report report = new Report(TestDataSets.dataSet("someText1", "someText2"));
+        report.setAppendable(true);
+        report.createReport(getTemplate(), file, cache);
+        report.appendReport(file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        String actual = wb.getSheetAt(0).getRow(2).getCell(0).getStringCellValue();
+        wb.close();
+        assertEquals("someText1", actual);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedReportTest() {
+        MemoryReportCache cache = new MemoryReportCache(10);
+        cache.put("first", new byte[4]);
+        cache.put("second", new byte[4]);
+        cache.get("first");
+        cache.put("third", new byte[4]);
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertEquals(8, cache.getSize());
+    }
+
+    @Test
+    public void diskCacheTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        DiskReportCache cache = new DiskReportCache(cacheDirectory, 10_000_000);
+        new Report(TestDataSets.dataSet("someText1", "someText2")).createReport(getTemplate(), file, cache);
+        byte[] expected = Files.readAllBytes(file.toPath());
+
+        DiskReportCache reopenedCache = new DiskReportCache(cacheDirectory, 10_000_000);
+        assertEquals(cache.getSize(), reopenedCache.getSize());
+        Files.delete(file.toPath());
+        new Report(TestDataSets.dataSet("someText1", "someText2")).createReport(getTemplate(), file, reopenedCache);
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void evictDiskReportTest() throws IOException {
+        DiskReportCache cache = new DiskReportCache(cacheDirectory, 10);
+        cache.put("first", new byte[6]);
+        cache.put("second", new byte[6]);
+        assertNull(cache.get("first"));
+        assertFalse(Files.exists(cacheDirectory.resolve("first.xlsx")));
+        assertNotNull(cache.get("second"));
+    }
+
+    private InputStream getTemplate() {
+        return getClass().getResourceAsStream("/template/Template32.xlsx");
+    }
+
+    private InputStream getGroupedTemplate() {
+        return getClass().getResourceAsStream("/template/Template52.xlsx");
+    }
+}
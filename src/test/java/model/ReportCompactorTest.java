@@ -0,0 +1,147 @@
+package model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import entity.DataSet;
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReportCompactorTest {
+
+    private File file;
+    private File uncompactedFile;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+        uncompactedFile = new File(TEMP + "/uncompacted.xlsx");
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(uncompactedFile.toPath());
+    }
+
+    @Test
+    public void removeUnusedStringsTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        createReports("/template/Template46.xlsx", createDataSet(3));
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        List<String> strings = new ArrayList<>();
+        for (RichTextString string : wb.getSharedStringSource().getSharedStringItems()) {
+            strings.add(string.getString());
+        }
+        assertEquals(List.of("Header", "someText1", "", "someText2", "someText3", "footer"), strings);
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertEquals("Header", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("someText3", sheet.getRow(3).getCell(1).getStringCellValue());
+        assertEquals("footer", sheet.getRow(4).getCell(0).getStringCellValue());
+        wb.close();
+        assertTrue(file.length() < uncompactedFile.length());
+    }
+
+    @Test
+    public void deduplicateImagesTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        createReports("/template/Template46.xlsx", createDataSet(3));
+
+        XSSFWorkbook uncompacted = new XSSFWorkbook(uncompactedFile.getPath());
+        assertEquals(3, uncompacted.getAllPictures().size());
+        uncompacted.close();
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(1, wb.getAllPictures().size());
+        assertEquals(3, wb.getSheetAt(0).getDrawingPatriarch().getShapes().size());
+        wb.close();
+    }
+
+    @Test
+    public void removeUnusedStylesTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        createReports("/template/Template47.xlsx", createDataSet(0));
+
+        XSSFWorkbook uncompacted = new XSSFWorkbook(uncompactedFile.getPath());
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(2, uncompacted.getNumCellStyles());
+        assertEquals(1, wb.getNumCellStyles());
+        assertEquals(2, uncompacted.getNumberOfFonts());
+        assertEquals(1, wb.getNumberOfFonts());
+        assertEquals("Header", wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        uncompacted.close();
+        wb.close();
+    }
+
+    @Test
+    public void keepUsedStylesTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        createReports("/template/Template47.xlsx", createDataSet(2));
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(2, wb.getNumCellStyles());
+        assertTrue(wb.getSheetAt(0).getRow(1).getCell(1).getCellStyle().getFont().getBold());
+        assertFalse(wb.getSheetAt(0).getRow(1).getCell(0).getCellStyle().getFont().getBold());
+        wb.close();
+    }
+
+    @Test
+    public void reflectionFieldsTest() throws IOException, ReflectiveOperationException {
+        JsonNode config;
+        try (InputStream input = getClass().getResourceAsStream("/META-INF/native-image/org.gearcode/reporthelper/reflect-config.json")) {
+            config = new ObjectMapper().readTree(input);
+        }
+        checkFields(config, SharedStringsTable.class, ReportCompactor.SHARED_STRINGS_FIELDS);
+        checkFields(config, StylesTable.class, ReportCompactor.STYLES_FIELDS);
+        SharedStringsTable.class.getDeclaredMethod("xmlText", CTRst.class);
+        checkFields(config, XSSFSheet.class, PartitionWorkbook.SHEET_FIELDS);
+        XSSFRow.class.getDeclaredConstructor(CTRow.class, XSSFSheet.class);
+        assertTrue(PartitionWorkbook.isSupported());
+    }
+
+    private void checkFields(JsonNode config, Class<?> c, String[] fields) throws NoSuchFieldException {
+        Set<String> registered = new HashSet<>();
+        for (JsonNode entry : config) {
+            if (entry.get("name").asText().equals(c.getName())) {
+                entry.get("fields").forEach(field -> registered.add(field.get("name").asText()));
+            }
+        }
+        for (String field : fields) {
+            c.getDeclaredField(field);
+            assertTrue(c.getSimpleName() + "." + field, registered.contains(field));
+        }
+    }
+
+    private void createReports(String template, DataSet dataSet) throws IOException, IncorrectTemplateException, ReportKeyException {
+        Report report = new Report(dataSet);
+        report.createReport(getClass().getResourceAsStream(template), uncompactedFile);
+        report.setCompactOutput(true);
+        report.createReport(getClass().getResourceAsStream(template), file);
+    }
+
+    private DataSet createDataSet(int rows) {
+        DataSet dataSet = TestDataSets.dataSet(rows);
+        dataSet.setText("footer");
+        return dataSet;
+    }
+}
@@ -0,0 +1,132 @@
+package model;
+
+import entity.Data;
+import entity.DataRow;
+import entity.DataSet;
+import entity.Invoice;
+import entity.InvoiceLine;
+import entity.IterableInvoice;
+import entity.MatrixInvoice;
+import enums.TextStorage;
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReportImporterTest {
+
+    private File file;
+
+    public final String TEMP = System.getProperty("user.home") + "/TESTS";
+
+    @Before
+    public void before() {
+        new File(TEMP).mkdir();
+        file = new File(TEMP + "/test.xlsx");
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    public void importReportTest() throws IOException, IncorrectTemplateException, ReportKeyException, ParseException {
+        DataSet dataSet = createDataSet(3);
+        new Report(dataSet).createReport(getClass().getResourceAsStream("/template/Template49.xlsx"), file);
+
+        DataSet result = new ReportImporter<>(DataSet.class)
+                .importReport(getClass().getResourceAsStream("/template/Template49.xlsx"), file);
+        assertEquals("SomeText", result.getText());
+        assertEquals(10, result.getIntNumber());
+        assertEquals(10.5, result.getDoubleNumber(), 0);
+        assertEquals(2147483649L, result.getLongNumber());
+        assertEquals(dataSet.getDefaultDate(), result.getDefaultDate());
+        assertEquals(3, result.getDataRows().size());
+        for (int i = 0; i < 3; i++) {
+            DataRow dataRow = result.getDataRows().get(i);
+            assertEquals("someText" + (i + 1), dataRow.getText());
+            assertEquals(i + 1, dataRow.getDataList().size());
+            for (int j = 0; j <= i; j++) {
+                assertEquals("Data" + (i + 1) + "." + (j + 1), dataRow.getDataList().get(j).getText());
+            }
+        }
+    }
+
+    @Test
+    public void importEmptyListTest() throws IOException, IncorrectTemplateException, ReportKeyException, ParseException {
+        new Report(createDataSet(0)).createReport(getClass().getResourceAsStream("/template/Template49.xlsx"), file);
+
+        DataSet result = new ReportImporter<>(DataSet.class)
+                .importReport(getClass().getResourceAsStream("/template/Template49.xlsx"), file);
+        assertTrue(result.getDataRows().isEmpty());
+        assertEquals(2147483649L, result.getLongNumber());
+    }
+
+    @Test
+    public void importInlineStringsTest() throws IOException, IncorrectTemplateException, ReportKeyException, ParseException {
+        Report report = new Report(createDataSet(2));
+        report.setTextStorage(TextStorage.INLINE);
+        report.createReport(getClass().getResourceAsStream("/template/Template49.xlsx"), file);
+
+        DataSet result = new ReportImporter<>(DataSet.class)
+                .importReport(getClass().getResourceAsStream("/template/Template49.xlsx"), file);
+        assertEquals("SomeText", result.getText());
+        assertEquals("someText2", result.getDataRows().get(1).getText());
+        assertEquals("Data2.2", result.getDataRows().get(1).getDataList().get(1).getText());
+    }
+
+    @Test
+    public void importListWithAggregatesTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        for (String template : new String[]{"/template/Template51.xlsx", "/template/Template59.xlsx"}) {
+            List<InvoiceLine> lines = List.of(new InvoiceLine("a", 1, 1644924015000L), new InvoiceLine("b", 2, 1645010415000L));
+            new Report(new Invoice("1", lines)).createReport(getClass().getResourceAsStream(template), file);
+
+            Invoice result = new ReportImporter<>(Invoice.class).importReport(getClass().getResourceAsStream(template), file);
+            assertEquals("1", result.getNumber());
+            assertEquals(2, result.getLines().size());
+            assertEquals("b", result.getLines().get(1).getName());
+            assertEquals(2, result.getLines().get(1).getAmount(), 0);
+        }
+    }
+
+    @Test(expected = IncorrectTemplateException.class)
+    public void importGroupedListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<InvoiceLine> lines = List.of(new InvoiceLine("a", 10, 1644924015000L, "A"));
+        new Report(new IterableInvoice("1", lines)).createReport(getClass().getResourceAsStream("/template/Template52.xlsx"), file);
+
+        new ReportImporter<>(IterableInvoice.class).importReport(getClass().getResourceAsStream("/template/Template52.xlsx"), file);
+    }
+
+    @Test(expected = IncorrectTemplateException.class)
+    public void importHorizontalListTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<InvoiceLine> lines = List.of(new InvoiceLine("a", 10, 1644924015000L));
+        new Report(new MatrixInvoice("7", lines)).createReport(getClass().getResourceAsStream("/template/Template56.xlsx"), file);
+
+        new ReportImporter<>(MatrixInvoice.class).importReport(getClass().getResourceAsStream("/template/Template56.xlsx"), file);
+    }
+
+    private DataSet createDataSet(int rows) throws ParseException {
+        List<DataRow> dataRows = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            List<Data> dataList = new ArrayList<>();
+            for (int j = 1; j <= i; j++) {
+                dataList.add(new Data("Data" + i + "." + j));
+            }
+            dataRows.add(new DataRow("someText" + i, null, dataList));
+        }
+        long date = new SimpleDateFormat("dd.MM.yyyy").parse("15.02.2022").getTime();
+        return new DataSet("SomeText", 10.5, 10, date, null, dataRows);
+    }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import entity.DataSet;
+import entity.GroupedInvoice;
+import entity.InvoiceLine;
+import entity.IterableInvoice;
+import entity.MatrixInvoice;
+import enums.DataType;
+import exception.IncorrectTemplateException;
+import exception.ReportKeyException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReportPlanTest {
+
+    @Test
+    public void explainComplexKeyTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        Report report = new Report(TestDataSets.dataSet("someText1", "someText2"));
+        ReportPlan plan = report.explain(getClass().getResourceAsStream("/template/Template32.xlsx"));
+        assertEquals(2, plan.getInsertedRows("complex_DataSet_dataRows"));
+        assertEquals(2, plan.getCells(DataType.TEXT));
+        assertEquals(2, plan.getTotalCells());
+        assertTrue(plan.getEstimatedMemory() > 0);
+        assertTrue(plan.getEstimatedTime().toNanos() > 0);
+        assertThrows(UnsupportedOperationException.class, () -> plan.getInsertedRows().put("complex_DataSet_dataRows", 0L));
+        assertThrows(UnsupportedOperationException.class, () -> plan.getCells().clear());
+    }
+
+    @Test
+    public void explainHorizontalKeyTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<InvoiceLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            lines.add(new InvoiceLine("line" + i, i, 1644924015000L));
+        }
+        Report report = new Report(new MatrixInvoice("7", lines));
+        ReportPlan plan = report.explain(getClass().getResourceAsStream("/template/Template56.xlsx"));
+        assertEquals(1, plan.getInsertedRows("complex_columns"));
+        assertEquals(3 * 3 - 1, plan.getInsertedColumns("complex_columns"));
+        assertEquals(3, plan.getCells(DataType.NUMERIC));
+    }
+
+    @Test
+    public void explainGroupedKeyTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<InvoiceLine> lines = new ArrayList<>();
+        lines.add(new InvoiceLine("a", 10, 1644924015000L, "A"));
+        lines.add(new InvoiceLine("b", 5, 1644924015000L, "A"));
+        lines.add(new InvoiceLine("c", 20, 1644924015000L, "B"));
+        Report report = new Report(new IterableInvoice("1", lines));
+        ReportPlan plan = report.explain(getClass().getResourceAsStream("/template/Template52.xlsx"));
+        //Три строки элементов и по строке заголовка и итогов на каждую из двух групп
+        assertEquals(3 + 2 * 2, plan.getInsertedRows("complex_groups"));
+        assertEquals(3, plan.getCounterCells());
+        assertEquals(3 + 2 + 2, plan.getCells(DataType.TEXT));
+        assertEquals(2 + 3 + 2 * 2, plan.getCells(DataType.NUMERIC));
+        assertTrue(plan.getUnknownSizeKeys().isEmpty());
+    }
+
+    @Test
+    public void explainStreamedGroupedKeyTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        List<InvoiceLine> lines = List.of(new InvoiceLine("a", 10, 1644924015000L, "A"));
+        Report report = new Report(new GroupedInvoice("1", lines.iterator()));
+        ReportPlan plan = report.explain(getClass().getResourceAsStream("/template/Template52.xlsx"));
+        assertEquals(Set.of("complex_groups"), plan.getUnknownSizeKeys());
+        assertEquals(0, plan.getInsertedRows("complex_groups"));
+    }
+
+    @Test
+    public void explainImageTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        DataSet dataSet = TestDataSets.dataSet("someText1", "someText2");
+        dataSet.setImagePath("src/test/resources/img/test.jpg");
+        Report report = new Report(dataSet);
+        ReportPlan plan = report.explain(getClass().getResourceAsStream("/template/Template6.xlsx"));
+        assertEquals(1, plan.getImages());
+        assertEquals(new File("src/test/resources/img/test.jpg").length(), plan.getImageBytes());
+    }
+
+    @Test
+    public void explainTemporaryKeyTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        Report report = new Report(TestDataSets.dataSet("someText1", "someText2"));
+        ReportPlan plan = report.explain(getClass().getResourceAsStream("/template/Template3.xlsx"));
+        assertEquals(1, plan.getTemporaryRows());
+    }
+
+    @Test
+    public void explainIncorrectTemplateTest() throws ReportKeyException {
+        Report report = new Report(TestDataSets.dataSet("someText1", "someText2"));
+        assertThrows(IncorrectTemplateException.class,
+                () -> report.explain(getClass().getResourceAsStream("/template/Template24.xlsx")));
+    }
+}
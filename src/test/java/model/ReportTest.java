@@ -13,9 +13,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.*;
 
@@ -358,6 +360,211 @@ public class ReportTest {
         assertEquals("someValue", actual2);
     }
 
+    @Test
+    public void warmUpTest() throws IOException, IncorrectTemplateException, ReportKeyException {
+        File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+        Set<String> tempFiles = Set.of(Objects.requireNonNull(tempDirectory.list((directory, name) -> name.startsWith("warm-up"))));
+        Report.warmUp();
+        assertEquals(tempFiles, Set.of(Objects.requireNonNull(tempDirectory.list((directory, name) -> name.startsWith("warm-up")))));
+
+        template = getClass().getResourceAsStream("/template/Template32.xlsx");
+        report.createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals("someText2", wb.getSheetAt(0).getRow(1).getCell(0).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void shardComplexKeyTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        template = getClass().getResourceAsStream("/template/Template46.xlsx");
+        List<DataRow> dataRows = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            dataRows.add(new DataRow("someText" + i, "src/test/resources/img/test.jpg", new ArrayList<>()));
+        }
+        DataSet dataSet = new DataSet();
+        dataSet.setText("footer");
+        dataSet.setDataRows(dataRows);
+        Report report = new Report(dataSet);
+        report.setMaxRowsPerSheet(5);
+        report.createReport(template, file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(3, wb.getNumberOfSheets());
+        XSSFSheet first = wb.getSheetAt(0);
+        XSSFSheet second = wb.getSheetAt(1);
+        XSSFSheet last = wb.getSheetAt(2);
+        assertEquals("Sheet1 (1)", first.getSheetName());
+        assertEquals("Sheet1 (2)", second.getSheetName());
+        assertEquals("Sheet1", last.getSheetName());
+
+        assertEquals("Header", first.getRow(0).getCell(0).getStringCellValue());
+        assertEquals(1, first.getMergedRegions().size());
+        assertEquals(6000, first.getColumnWidth(0));
+        assertEquals("someText1", first.getRow(1).getCell(1).getStringCellValue());
+        assertEquals("someText2", first.getRow(2).getCell(1).getStringCellValue());
+        assertEquals(2, first.getLastRowNum());
+        assertEquals(2, first.getDrawingPatriarch().getShapes().size());
+
+        assertEquals("Header", second.getRow(0).getCell(0).getStringCellValue());
+        assertEquals(3.0, second.getRow(1).getCell(0).getNumericCellValue(), 0);
+        assertEquals("someText4", second.getRow(2).getCell(1).getStringCellValue());
+
+        assertEquals("Header", last.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("someText5", last.getRow(1).getCell(1).getStringCellValue());
+        assertEquals("footer", last.getRow(2).getCell(0).getStringCellValue());
+        assertEquals(2, last.getLastRowNum());
+        assertEquals(1, last.getDrawingPatriarch().getShapes().size());
+        wb.close();
+    }
+
+    @Test
+    public void keepComplexKeyInOneSheetTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        template = getClass().getResourceAsStream("/template/Template46.xlsx");
+        report.createReport(template, file);
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        assertEquals(1, wb.getNumberOfSheets());
+        assertEquals("someText2", wb.getSheetAt(0).getRow(2).getCell(1).getStringCellValue());
+        wb.close();
+    }
+
+    @Test
+    public void setIncorrectMaxRowsPerSheetTest() {
+        assertThrows(IllegalArgumentException.class, () -> report.setMaxRowsPerSheet(0));
+        assertThrows(IllegalArgumentException.class, () -> report.setMaxRowsPerSheet(2_000_000));
+    }
+
+    @Test
+    public void fillComplexKeyByPartitionsTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        List<Data> dataList = new ArrayList<>();
+        dataList.add(new Data("Data1"));
+        dataList.add(new Data("Data2"));
+        List<DataRow> dataRows = new ArrayList<>();
+        for (int i = 1; i <= 2 * Report.MIN_PARTITION_SIZE + 1; i++) {
+            dataRows.add(new DataRow("someText" + i, null, dataList));
+        }
+        DataSet dataSet = new DataSet();
+        dataSet.setText("footer");
+        dataSet.setDataRows(dataRows);
+
+        File sequentialFile = new File(TEMP + "/sequential.xlsx");
+        try {
+            Report report = new Report(dataSet);
+            report.createReport(getClass().getResourceAsStream("/template/Template47.xlsx"), sequentialFile);
+            report.setParallelism(4);
+            report.createReport(getClass().getResourceAsStream("/template/Template47.xlsx"), file);
+
+            XSSFWorkbook expected = new XSSFWorkbook(sequentialFile.getPath());
+            XSSFWorkbook actual = new XSSFWorkbook(file.getPath());
+            XSSFSheet expectedSheet = expected.getSheetAt(0);
+            XSSFSheet actualSheet = actual.getSheetAt(0);
+            assertEquals(1 + 3 * dataRows.size() + 1, actualSheet.getLastRowNum() + 1);
+            assertEquals(expectedSheet.getLastRowNum(), actualSheet.getLastRowNum());
+            assertEquals(new HashSet<>(expectedSheet.getMergedRegions()), new HashSet<>(actualSheet.getMergedRegions()));
+            for (int i = 0; i <= expectedSheet.getLastRowNum(); i++) {
+                XSSFRow expectedRow = expectedSheet.getRow(i);
+                XSSFRow actualRow = actualSheet.getRow(i);
+                assertEquals(expectedRow.getHeight(), actualRow.getHeight());
+                assertEquals(expectedRow.getLastCellNum(), actualRow.getLastCellNum());
+                for (int j = 0; j < expectedRow.getLastCellNum(); j++) {
+                    assertEquals(expectedRow.getCell(j).toString(), actualRow.getCell(j).toString());
+                    assertEquals(expectedRow.getCell(j).getCellStyle().getIndex(), actualRow.getCell(j).getCellStyle().getIndex());
+                }
+            }
+            assertEquals("someText101", actualSheet.getRow(1 + 3 * 100).getCell(1).getStringCellValue());
+            assertEquals(101.0, actualSheet.getRow(1 + 3 * 100).getCell(0).getNumericCellValue(), 0);
+            expected.close();
+            actual.close();
+        } finally {
+            Files.deleteIfExists(sequentialFile.toPath());
+        }
+    }
+
+    @Test
+    public void setIncorrectParallelismTest() {
+        assertThrows(IllegalArgumentException.class, () -> report.setParallelism(0));
+    }
+
+    @Test
+    public void appendReportTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        Report report = new Report(createAppendDataSet(1, 2));
+        report.setAppendable(true);
+        report.createReport(getClass().getResourceAsStream("/template/Template46.xlsx"), file);
+        new Report(createAppendDataSet(3, 2)).appendReport(file);
+        new Report(createAppendDataSet(5, 1)).appendReport(file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheet("Sheet1");
+        assertEquals("Header", sheet.getRow(0).getCell(0).getStringCellValue());
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, sheet.getRow(i).getCell(0).getNumericCellValue(), 0);
+            assertEquals("someText" + i, sheet.getRow(i).getCell(1).getStringCellValue());
+        }
+        assertEquals("footer", sheet.getRow(6).getCell(0).getStringCellValue());
+        assertEquals(6, sheet.getLastRowNum());
+        assertEquals(5, sheet.getDrawingPatriarch().getShapes().size());
+        assertNull(wb.getSheet("REPORT_KEYS"));
+        assertTrue(wb.isSheetVeryHidden(wb.getSheetIndex("complex_DataSet_dataRows")));
+        wb.close();
+    }
+
+    @Test
+    public void appendToEmptyReportTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        Report report = new Report(createAppendDataSet(1, 0));
+        report.setAppendable(true);
+        report.createReport(getClass().getResourceAsStream("/template/Template46.xlsx"), file);
+        new Report(createAppendDataSet(1, 2)).appendReport(file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheet("Sheet1");
+        assertEquals("someText1", sheet.getRow(1).getCell(1).getStringCellValue());
+        assertEquals(2, sheet.getRow(2).getCell(0).getNumericCellValue(), 0);
+        assertEquals("footer", sheet.getRow(3).getCell(0).getStringCellValue());
+        assertEquals(3, sheet.getLastRowNum());
+        wb.close();
+    }
+
+    @Test
+    public void appendToStreamedReportTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        String json = "{\"text\": \"footer\", \"dataRows\": [{\"text\": \"someText1\", \"dataList\": []},"
+                + "{\"text\": \"someText2\", \"dataList\": []}]}";
+        try (JsonStreamSource source = new JsonStreamSource(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            Report report = new Report(source.getRoot(), DataSet.class, source);
+            report.setAppendable(true);
+            report.createReport(getClass().getResourceAsStream("/template/Template46.xlsx"), file);
+        }
+        new Report(createAppendDataSet(3, 1)).appendReport(file);
+
+        XSSFWorkbook wb = new XSSFWorkbook(file.getPath());
+        XSSFSheet sheet = wb.getSheet("Sheet1");
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(i, sheet.getRow(i).getCell(0).getNumericCellValue(), 0);
+            assertEquals("someText" + i, sheet.getRow(i).getCell(1).getStringCellValue());
+        }
+        assertEquals("footer", sheet.getRow(4).getCell(0).getStringCellValue());
+        assertEquals(4, sheet.getLastRowNum());
+        wb.close();
+    }
+
+    @Test
+    public void appendToNotAppendableReportTest() throws IOException, ReportKeyException, IncorrectTemplateException {
+        new Report(createAppendDataSet(1, 1)).createReport(getClass().getResourceAsStream("/template/Template46.xlsx"), file);
+        long length = file.length();
+        Report report = new Report(createAppendDataSet(2, 1));
+        assertThrows(IncorrectTemplateException.class, () -> report.appendReport(file));
+        assertEquals(length, file.length());
+    }
+
+    private DataSet createAppendDataSet(int from, int rows) {
+        List<DataRow> dataRows = new ArrayList<>();
+        for (int i = from; i < from + rows; i++) {
+            dataRows.add(new DataRow("someText" + i, "src/test/resources/img/test.jpg", new ArrayList<>()));
+        }
+        DataSet dataSet = new DataSet();
+        dataSet.setText("footer");
+        dataSet.setDataRows(dataRows);
+        return dataSet;
+    }
+
     private DataSet createDataSet() {
         List<Data> dataList = new ArrayList<>();
         dataList.add(new Data("Data1"));
@@ -0,0 +1,47 @@
+package model;
+
+import entity.Data;
+import entity.DataRow;
+import entity.DataSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Общие данные тестов: строки списка complex_DataSet_dataRows с изображением и одним элементом Data1
+final class TestDataSets {
+
+    static final String IMAGE = "src/test/resources/img/test.jpg";
+
+    private TestDataSets() {
+    }
+
+    static DataSet dataSet(String... texts) {
+        DataSet dataSet = new DataSet();
+        dataSet.setDataRows(createDataRows(texts));
+        return dataSet;
+    }
+
+    //Строки someText1 ... someTextN
+    static DataSet dataSet(int rows) {
+        String[] texts = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            texts[i] = "someText" + (i + 1);
+        }
+        return dataSet(texts);
+    }
+
+    //Набор с заполненными ключами верхнего уровня, как в ReportTest
+    static DataSet filledDataSet(String... texts) {
+        return new DataSet("SomeText", 10.5, 10, 1644924015000L, IMAGE, createDataRows(texts));
+    }
+
+    private static List<DataRow> createDataRows(String... texts) {
+        List<DataRow> dataRows = new ArrayList<>();
+        for (String text : texts) {
+            List<Data> dataList = new ArrayList<>();
+            dataList.add(new Data("Data1"));
+            dataRows.add(new DataRow(text, IMAGE, dataList));
+        }
+        return dataRows;
+    }
+}
@@ -0,0 +1,71 @@
+package processor;
+
+import entity.*;
+import enums.DataType;
+import enums.KeyType;
+import model.KeyData;
+import model.ReportDescriptor;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ReportKeyProcessorTest {
+
+    @Test
+    public void generateDescriptorTest() {
+        ReportDescriptor descriptor = ReportDescriptor.find(DataRow.class);
+        assertNotNull(descriptor);
+        assertEquals(DataRow.class, descriptor.getType());
+        assertEquals(3, descriptor.getKeys().size());
+    }
+
+    @Test
+    public void describeKeysTest() {
+        Map<String, KeyData> keys = getKeys(DataSet.class);
+        KeyData keyData = keys.get("key_DataSet_anotherFormatDate");
+        assertEquals("object: DataSet, field: anotherFormatDate", keyData.getDescription());
+        assertEquals(DataType.DATE, keyData.getReportKey().type());
+        assertEquals("yyyy-MM-dd", keyData.getReportKey().dateFormatPattern());
+        assertEquals(KeyType.COMPLEX, keys.get("customKey").getReportKey().keyType());
+        assertEquals(DataRow.class, keys.get("customKey").getElementType());
+    }
+
+    @Test
+    public void readValueByGetterTest() throws IllegalAccessException {
+        Map<String, KeyData> keys = getKeys(DataRow.class);
+        DataRow dataRow = new DataRow("someText", null, null);
+        assertEquals("someText", keys.get("key_DataRow_text").getValue(dataRow));
+    }
+
+    @Test
+    public void readPrivateValueWithoutGetterTest() throws IllegalAccessException {
+        Map<String, KeyData> keys = getKeys(DataSet.class);
+        DataSet dataSet = new DataSet();
+        dataSet.setRegularKey("someText");
+        assertEquals("someText", keys.get("key_DataSet_regularKey").getValue(dataSet));
+    }
+
+    @Test
+    public void readValueOfAnotherObjectTest() {
+        KeyData keyData = getKeys(DataRow.class).get("key_DataRow_text");
+        assertThrows(IllegalArgumentException.class, () -> keyData.getValue(new Data("text")));
+    }
+
+    @Test
+    public void skipIncorrectAnnotationTest() {
+        assertNull(ReportDescriptor.find(IncorrectAnnotation.class));
+    }
+
+    private Map<String, KeyData> getKeys(Class<?> c) {
+        Map<String, KeyData> keys = new HashMap<>();
+        List<KeyData> keyList = ReportDescriptor.find(c).getKeys();
+        for (KeyData keyData : keyList) {
+            keys.put(keyData.getName(), keyData);
+        }
+        return keys;
+    }
+}